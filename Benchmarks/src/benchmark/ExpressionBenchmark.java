@@ -0,0 +1,31 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import experiment.DTMCToSRE;
+import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+
+/*
+ * getExpressionFromGTG on the two state graph left by the elimination. it
+ * doesn't change the graph, so one graph serves all invocations
+ */
+public class ExpressionBenchmark extends ModelBenchmark {
+
+	private DiscreteTimeMarkovChain gtg;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		gtg = loadDTMC();
+		DTMCToStochasticRegularExpressionConverter.convertToSimpleAutomaton(gtg);
+		DTMCToSRE.weightTransitionProbabilities(gtg);
+		DTMCToStochasticRegularExpressionConverter.convertToGTG(gtg);
+	}
+
+	@Benchmark
+	public String getExpressionFromGTG(){
+		return DTMCToStochasticRegularExpressionConverter.getExpressionFromGTG(gtg);
+	}
+}
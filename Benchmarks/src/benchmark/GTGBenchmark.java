@@ -0,0 +1,38 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import experiment.DTMCToSRE;
+import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+
+/*
+ * convertToGTG, the state elimination itself, on the weighted simple
+ * automaton
+ */
+public class GTGBenchmark extends ModelBenchmark {
+
+	private DiscreteTimeMarkovChain weighted;
+	private DiscreteTimeMarkovChain dtmc;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		weighted = loadDTMC();
+		DTMCToStochasticRegularExpressionConverter.convertToSimpleAutomaton(weighted);
+		DTMCToSRE.weightTransitionProbabilities(weighted);
+	}
+
+	@Setup(Level.Invocation)
+	public void copy(){
+		dtmc = weighted.copyOnWriteClone();
+		dtmc.unshare();
+	}
+
+	@Benchmark
+	public DiscreteTimeMarkovChain convertToGTG(){
+		DTMCToStochasticRegularExpressionConverter.convertToGTG(dtmc);
+		return dtmc;
+	}
+}
@@ -0,0 +1,37 @@
+package benchmark;
+
+import org.eclipse.emf.common.util.URI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import experiment.TransitionGraphToAutomaton;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+import transitiongraph.TransitionGraph;
+import transitiongraph.io.TransitionGraphResources;
+
+/*
+ * loading the xmi file of a model, and building the chain from the loaded
+ * transition graph
+ */
+public class LoadBenchmark extends ModelBenchmark {
+
+	private URI uri;
+	private TransitionGraph graph;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		uri = getModelURI();
+		graph = TransitionGraphResources.load(uri);
+	}
+
+	@Benchmark
+	public TransitionGraph load(){
+		return TransitionGraphResources.load(uri);
+	}
+
+	@Benchmark
+	public DiscreteTimeMarkovChain toDTMC(){
+		return TransitionGraphToAutomaton.toDTMC(graph);
+	}
+}
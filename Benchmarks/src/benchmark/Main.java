@@ -0,0 +1,26 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * runs the benchmarks with the gc profiler, so that the allocation rate is
+ * reported next to throughput and average time. the arguments are the usual
+ * jmh arguments, e.g. a benchmark pattern and -p model=task-main/leader3_2
+ */
+public class Main {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException{
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLine);
+		// the benchmarks of the package benchmark only, not those of benchmark.micro
+		if(commandLine.getIncludes().isEmpty()) options.include("^benchmark\\.[^.]+Benchmark\\..*");
+		options.addProfiler(GCProfiler.class);
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,69 @@
+package benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.URI;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import experiment.TransitionGraphToAutomaton;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+import transitiongraph.TransitionGraph;
+import transitiongraph.io.TransitionGraphResources;
+
+/*
+ * the common part of the benchmarks: one run per model of task-main and
+ * task-extension2, given as <task>/<model> relative to the emf testdata.
+ * the testdata is looked up in ../ExperimentalData/testdata/emf, or in the
+ * directory given by -Dbenchmark.testdata (pass it to the forks with
+ * -jvmArgsAppend).
+ *
+ * every benchmark measures one step of the conversion on its own. the steps
+ * that change the chain work on a copy-on-write clone taken before every
+ * invocation, which is made to own its sets and rows right away; otherwise
+ * the first writes of the step would copy them, and the clone would be part
+ * of the measurement after all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class ModelBenchmark {
+
+	@Param({"task-main/leader3_2", "task-main/leader3_3", "task-main/leader3_4", "task-main/leader3_5",
+			"task-main/leader3_6", "task-main/leader3_8", "task-main/leader4_2", "task-main/leader4_3",
+			"task-main/leader4_4", "task-main/leader4_5", "task-main/leader4_6", "task-main/leader5_2",
+			"task-main/leader5_3", "task-main/leader5_4", "task-main/leader5_5", "task-main/leader6_2",
+			"task-main/leader6_3", "task-extension2/leader3_2", "task-extension2/leader3_3",
+			"task-extension2/leader3_4", "task-extension2/leader3_5", "task-extension2/leader3_6",
+			"task-extension2/leader4_2", "task-extension2/leader4_3", "task-extension2/leader5_2",
+			"task-extension2/leader6_2"})
+	public String model;
+
+	protected URI getModelURI(){
+		File testdata = new File(System.getProperty("benchmark.testdata", "../ExperimentalData/testdata/emf"));
+		File xmi = new File(testdata, model + "." + TransitionGraphResources.XMI_EXTENSION);
+		if(!xmi.isFile()){
+			throw new IllegalStateException("model " + model + " not found in " + testdata.getAbsolutePath());
+		}
+		return URI.createFileURI(xmi.getAbsolutePath());
+	}
+
+	protected TransitionGraph loadModel(){
+		return TransitionGraphResources.load(getModelURI());
+	}
+
+	protected DiscreteTimeMarkovChain loadDTMC(){
+		return TransitionGraphToAutomaton.toDTMC(loadModel());
+	}
+}
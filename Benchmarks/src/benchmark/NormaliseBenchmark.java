@@ -0,0 +1,37 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import experiment.DTMCToSRE;
+import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+
+/*
+ * weightTransitionProbabilities on the simple automaton, for every state but
+ * the initial one as in DTMCToSRE
+ */
+public class NormaliseBenchmark extends ModelBenchmark {
+
+	private DiscreteTimeMarkovChain simple;
+	private DiscreteTimeMarkovChain dtmc;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		simple = loadDTMC();
+		DTMCToStochasticRegularExpressionConverter.convertToSimpleAutomaton(simple);
+	}
+
+	@Setup(Level.Invocation)
+	public void copy(){
+		dtmc = simple.copyOnWriteClone();
+		dtmc.unshare();
+	}
+
+	@Benchmark
+	public DiscreteTimeMarkovChain weightTransitionProbabilities(){
+		DTMCToSRE.weightTransitionProbabilities(dtmc);
+		return dtmc;
+	}
+}
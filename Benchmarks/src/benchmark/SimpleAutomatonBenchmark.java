@@ -0,0 +1,34 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+
+/*
+ * convertToSimpleAutomaton on the chain as it is loaded
+ */
+public class SimpleAutomatonBenchmark extends ModelBenchmark {
+
+	private DiscreteTimeMarkovChain loaded;
+	private DiscreteTimeMarkovChain dtmc;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		loaded = loadDTMC();
+	}
+
+	@Setup(Level.Invocation)
+	public void copy(){
+		dtmc = loaded.copyOnWriteClone();
+		dtmc.unshare();
+	}
+
+	@Benchmark
+	public DiscreteTimeMarkovChain convertToSimpleAutomaton(){
+		DTMCToStochasticRegularExpressionConverter.convertToSimpleAutomaton(dtmc);
+		return dtmc;
+	}
+}
@@ -0,0 +1,93 @@
+package benchmark.micro;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
+import regular.Discretizer;
+
+/*
+ * the string primitives of the state elimination: splitting a label with
+ * Discretizer and building new labels with concatenate, star and or. every
+ * call takes the next of a fixed set of generated labels, so that no single
+ * label is optimised for
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LabelBenchmark {
+
+	private static final int LABELS = 64;
+
+	@Param({"16", "128", "1024", "8192"})
+	public int labelLength;
+
+	private String[] labels;
+	private String[] concatenations;
+	private BigDecimal[] probabilities;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		Random random = new Random(42);
+		labels = new String[LABELS];
+		concatenations = new String[LABELS];
+		probabilities = new BigDecimal[LABELS];
+		for(int i=0; i<LABELS; i++){
+			labels[i] = Labels.generate(random, labelLength);
+			concatenations[i] = Labels.generateConcatenation(random, labelLength);
+			probabilities[i] = Labels.probability(random);
+		}
+	}
+
+	private int next(){
+		next = (next + 1) & (LABELS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public String[] discretizerOr(){
+		return Discretizer.or(labels[next()]);
+	}
+
+	@Benchmark
+	public String[] discretizerCat(){
+		return Discretizer.cat(concatenations[next()]);
+	}
+
+	@Benchmark
+	public String concatenate(){
+		int i = next();
+		return DTMCToStochasticRegularExpressionConverter.concatenate(labels[i], concatenations[i]);
+	}
+
+	@Benchmark
+	public String star(){
+		int i = next();
+		return DTMCToStochasticRegularExpressionConverter.star(labels[i], probabilities[i]);
+	}
+
+	@Benchmark
+	public String or(){
+		int i = next();
+		return DTMCToStochasticRegularExpressionConverter.or(labels[i], probabilities[i],
+				concatenations[i], probabilities[(i + 1) & (LABELS - 1)]);
+	}
+}
@@ -0,0 +1,57 @@
+package benchmark.micro;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
+
+/*
+ * labels as the state elimination builds them: atoms s<id> combined with
+ * concatenate, or and star of the converter, until they have the requested
+ * length
+ */
+class Labels {
+
+	private static final BigDecimal[] PROBABILITIES = {new BigDecimal("0.125"), new BigDecimal("0.25"),
+			new BigDecimal("0.5"), new BigDecimal("0.75")};
+
+	/*
+	 * a label of at least the given length with or, concatenation and star at
+	 * any level
+	 */
+	static String generate(Random random, int length){
+		String label = atom(random);
+		while(label.length() < length){
+			switch(random.nextInt(5)){
+			case 0:
+			case 1:
+				label = DTMCToStochasticRegularExpressionConverter.concatenate(label, atom(random));
+				break;
+			case 2:
+			case 3:
+				label = DTMCToStochasticRegularExpressionConverter.or(label, probability(random),
+						atom(random), probability(random));
+				break;
+			default:
+				label = DTMCToStochasticRegularExpressionConverter.star(label, probability(random));
+			}
+		}
+		return label;
+	}
+
+	/*
+	 * a label that is a concatenation on the top level, as Discretizer.cat
+	 * expects it
+	 */
+	static String generateConcatenation(Random random, int length){
+		return DTMCToStochasticRegularExpressionConverter.concatenate(generate(random, length), atom(random));
+	}
+
+	static String atom(Random random){
+		return "s" + random.nextInt(1000);
+	}
+
+	static BigDecimal probability(Random random){
+		return PROBABILITIES[random.nextInt(PROBABILITIES.length)];
+	}
+}
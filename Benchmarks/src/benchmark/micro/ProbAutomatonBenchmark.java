@@ -0,0 +1,133 @@
+package benchmark.micro;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+
+/*
+ * the ProbAutomaton operations the state elimination calls most, on a random
+ * chain with the given number of states and four transitions per state.
+ * states and state pairs are taken from a fixed random sequence.
+ *
+ * adding and removing a transition are measured together, so that the chain
+ * stays the same from call to call. both drop the cached transition arrays
+ * of the automaton, adding and removing a state drops the state array. the
+ * plain lookups are measured with the caches filled, the *AfterChange ones
+ * after such a pair, so that they rebuild the cache they read as the lookups
+ * of an elimination do after the previous one changed the chain.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbAutomatonBenchmark {
+
+	private static final int OUT_DEGREE = 4;
+	private static final int PICKS = 1024;
+
+	@Param({"16", "256", "4096"})
+	public int stateCount;
+
+	private DiscreteTimeMarkovChain dtmc;
+	private ProbState[] from, to;
+	private int[] ids;
+	private ProbTransition[] extra;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		Random random = new Random(42);
+		dtmc = new DiscreteTimeMarkovChain(stateCount, stateCount * OUT_DEGREE);
+		ProbState[] states = new ProbState[stateCount];
+		for(int i=0; i<stateCount; i++){
+			states[i] = dtmc.createStateWithId(i);
+		}
+		dtmc.setInitialState(states[0]);
+		dtmc.addFinalState(states[stateCount-1]);
+		BigDecimal p = new BigDecimal("0.25");
+		for(int i=0; i<stateCount; i++){
+			for(int k=0; k<OUT_DEGREE; k++){
+				int target = random.nextInt(stateCount);
+				dtmc.addTransition(new ProbTransition(states[i], states[target], "s" + target, p));
+			}
+		}
+
+		from = new ProbState[PICKS];
+		to = new ProbState[PICKS];
+		ids = new int[PICKS];
+		extra = new ProbTransition[PICKS];
+		for(int i=0; i<PICKS; i++){
+			from[i] = states[random.nextInt(stateCount)];
+			to[i] = states[random.nextInt(stateCount)];
+			ids[i] = random.nextInt(stateCount);
+			// a label no transition of the chain has
+			extra[i] = new ProbTransition(from[i], to[i], "x" + i, p);
+		}
+		dtmc.getStates();
+		dtmc.getTransitions();
+	}
+
+	private int next(){
+		next = (next + 1) & (PICKS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public ProbTransition addAndRemoveTransition(){
+		ProbTransition t = extra[next()];
+		dtmc.addTransition(t);
+		dtmc.removeTransition(t);
+		return t;
+	}
+
+	@Benchmark
+	public ProbTransition[] getTransitionsFromStateToState(){
+		int i = next();
+		return dtmc.getTransitionsFromStateToState(from[i], to[i]);
+	}
+
+	@Benchmark
+	public ProbTransition[] getTransitionsFromStateToStateAfterChange(){
+		int i = next();
+		// extra[i] leaves from[i], so the array of its row is dropped
+		dtmc.addTransition(extra[i]);
+		dtmc.removeTransition(extra[i]);
+		return dtmc.getTransitionsFromStateToState(from[i], to[i]);
+	}
+
+	@Benchmark
+	public ProbState getStateWithID(){
+		return dtmc.getStateWithID(ids[next()]);
+	}
+
+	@Benchmark
+	public ProbState[] getStates(){
+		return dtmc.getStates();
+	}
+
+	@Benchmark
+	public ProbState[] getStatesAfterChange(){
+		// transitions do not drop the state array, a state does
+		dtmc.removeState(dtmc.createStateWithId(stateCount));
+		return dtmc.getStates();
+	}
+}
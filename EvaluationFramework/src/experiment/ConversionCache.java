@@ -0,0 +1,383 @@
+package experiment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import automata.State;
+import automata.Transition;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import probautomata.ProbAutomaton;
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+
+/*
+ * an on-disk cache of conversion results, so that jobs converting the same
+ * automata with the same settings again don't repeat the state elimination.
+ *
+ * an entry is found by the sha-256 of a canonical form of the automaton and an
+ * options string that names everything else the result depends on (e.g. the
+ * elimination orderings). the canonical form lists the states by id and the
+ * transitions sorted by source, target, label and probability, so it doesn't
+ * depend on the order in which the automaton was built. a cached expression is
+ * therefore equivalent to, but may list alternatives in another order than, the
+ * expression a fresh run would give. the probabilities are taken as the
+ * automaton holds them, i.e. normalised to 10 decimal places by the
+ * transitions, so 0.5 and 0.50 give the same key.
+ *
+ * every entry is one gzip file <key>.gz in the cache directory holding the
+ * expression and some metrics of the run that produced it. a hit touches the
+ * file, and after every put the least recently used entries are deleted until
+ * the directory is below its size limit. entries are written to a temporary
+ * file and moved into place, so several jobs may share a directory.
+ */
+public class ConversionCache {
+
+	/*
+	 * part of every key, to be increased whenever the converters change their
+	 * output so that old entries are no longer found
+	 */
+	public static final int ENGINE_VERSION = 1;
+
+	private static final String EXTENSION = ".gz";
+	private static final int FORMAT_VERSION = 1;
+
+	private final File directory;
+	private final long maxBytes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public ConversionCache(File directory, long maxBytes){
+		if(!directory.isDirectory() && !directory.mkdirs()){
+			throw new IllegalArgumentException("cannot create the cache directory " + directory);
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+	/*
+	 * the cache configured by the system properties conversion.cache.dir and
+	 * conversion.cache.mb (default 256), or null if there is none
+	 */
+	public static ConversionCache fromSystemProperties(){
+		String dir = System.getProperty("conversion.cache.dir");
+		if(dir == null) return null;
+		long mb = Long.parseLong(System.getProperty("conversion.cache.mb", "256"));
+		return new ConversionCache(new File(dir), mb << 20);
+	}
+
+	/*
+	 * returns the entry for the key, or null on a miss. unreadable entries
+	 * are deleted and count as a miss
+	 */
+	public Entry get(String key){
+		File file = getFile(key);
+		if(!file.isFile()){
+			misses.incrementAndGet();
+			return null;
+		}
+		try{
+			Entry entry = read(file);
+			file.setLastModified(System.currentTimeMillis());
+			hits.incrementAndGet();
+			return entry;
+		} catch (IOException e){
+			file.delete();
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	public void put(String key, Entry entry) throws IOException{
+		File temp = File.createTempFile(key, ".tmp", directory);
+		try{
+			write(temp, entry);
+			try{
+				Files.move(temp.toPath(), getFile(key).toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e){
+				Files.move(temp.toPath(), getFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+		evict();
+	}
+
+	public long getHits(){
+		return hits.get();
+	}
+
+	public long getMisses(){
+		return misses.get();
+	}
+
+	/*
+	 * deletes the least recently used entries until the cache fits its limit
+	 */
+	private synchronized void evict(){
+		File[] files = directory.listFiles();
+		if(files == null) return;
+		int count = 0;
+		long[] lastModified = new long[files.length];
+		long total = 0;
+		for(File f: files){
+			if(!f.getName().endsWith(EXTENSION)) continue;
+			files[count] = f;
+			lastModified[count] = f.lastModified();
+			total += f.length();
+			count++;
+		}
+		if(total <= maxBytes) return;
+
+		Integer[] order = new Integer[count];
+		for(int i=0; i<count; i++) order[i] = i;
+		final long[] times = lastModified;
+		Arrays.sort(order, new Comparator<Integer>(){
+			public int compare(Integer a, Integer b){
+				return Long.compare(times[a], times[b]);
+			}
+		});
+		for(int i=0; i<count && total > maxBytes; i++){
+			File f = files[order[i]];
+			long length = f.length();
+			if(f.delete()) total -= length;
+		}
+	}
+
+	private File getFile(String key){
+		return new File(directory, key + EXTENSION);
+	}
+
+	private static void write(File file, Entry entry) throws IOException{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(new FileOutputStream(file))));
+		try{
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(entry.states);
+			out.writeInt(entry.transitions);
+			out.writeLong(entry.conversionMillis);
+			writeString(out, entry.ordering);
+			writeString(out, entry.expression);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static Entry read(File file) throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(file))));
+		try{
+			if(in.readInt() != FORMAT_VERSION) throw new IOException("unknown cache format in " + file);
+			int states = in.readInt();
+			int transitions = in.readInt();
+			long conversionMillis = in.readLong();
+			String ordering = readString(in);
+			String expression = readString(in);
+			return new Entry(expression, states, transitions, conversionMillis, ordering);
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * strings are stored as utf-8 with their length, writeUTF is limited to 64k
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException{
+		if(s == null){
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException{
+		int length = in.readInt();
+		if(length < 0) return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * the key of a dtmc, it has to be computed before the conversion changes
+	 * the chain
+	 */
+	public static String key(ProbAutomaton automaton, String options){
+		try{
+			KeyBuilder key = new KeyBuilder("dtmc", options);
+			ProbState[] states = automaton.getStates();
+			key.out.writeInt(states.length);
+			for(ProbState s: states){
+				key.out.writeInt(s.getID());
+				key.out.writeBoolean(automaton.isInitialState(s));
+				key.out.writeBoolean(automaton.isFinalState(s));
+			}
+			ProbTransition[] transitions = automaton.getTransitions().clone();
+			Arrays.sort(transitions, new Comparator<ProbTransition>(){
+				public int compare(ProbTransition a, ProbTransition b){
+					int c = compareEnds(a.getFromState().getID(), a.getToState().getID(),
+							b.getFromState().getID(), b.getToState().getID());
+					if(c != 0) return c;
+					c = a.getLabel().compareTo(b.getLabel());
+					if(c != 0) return c;
+					c = a.getProbability().compareTo(b.getProbability());
+					return c != 0 ? c : Integer.compare(a.getProbability().scale(), b.getProbability().scale());
+				}
+			});
+			key.out.writeInt(transitions.length);
+			for(ProbTransition t: transitions){
+				key.out.writeInt(t.getFromState().getID());
+				key.out.writeInt(t.getToState().getID());
+				writeString(key.out, t.getLabel());
+				byte[] unscaled = t.getProbability().unscaledValue().toByteArray();
+				key.out.writeInt(t.getProbability().scale());
+				key.out.writeInt(unscaled.length);
+				key.out.write(unscaled);
+			}
+			return key.finish();
+		} catch (IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 * the key of an fsa, it has to be computed before the conversion changes
+	 * the automaton
+	 */
+	public static String key(FiniteStateAutomaton fsa, String options){
+		try{
+			KeyBuilder key = new KeyBuilder("fsa", options);
+			State[] states = fsa.getStates();
+			key.out.writeInt(states.length);
+			for(State s: states){
+				key.out.writeInt(s.getID());
+				key.out.writeBoolean(s == fsa.getInitialState());
+				key.out.writeBoolean(fsa.isFinalState(s));
+			}
+			Transition[] transitions = fsa.getTransitions().clone();
+			Arrays.sort(transitions, new Comparator<Transition>(){
+				public int compare(Transition a, Transition b){
+					int c = compareEnds(a.getFromState().getID(), a.getToState().getID(),
+							b.getFromState().getID(), b.getToState().getID());
+					return c != 0 ? c : label(a).compareTo(label(b));
+				}
+			});
+			key.out.writeInt(transitions.length);
+			for(Transition t: transitions){
+				key.out.writeInt(t.getFromState().getID());
+				key.out.writeInt(t.getToState().getID());
+				writeString(key.out, label(t));
+			}
+			return key.finish();
+		} catch (IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String label(Transition t){
+		return ((FSATransition) t).getLabel();
+	}
+
+	private static int compareEnds(int fromA, int toA, int fromB, int toB){
+		int c = Integer.compare(fromA, fromB);
+		return c != 0 ? c : Integer.compare(toA, toB);
+	}
+
+	/*
+	 * feeds the canonical form into the digest without keeping it in memory
+	 */
+	private static class KeyBuilder {
+
+		final MessageDigest digest;
+		final DataOutputStream out;
+
+		KeyBuilder(String kind, String options) throws IOException{
+			try{
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e){
+				throw new IllegalStateException(e);
+			}
+			out = new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(new OutputStream(){
+				public void write(int b){
+				}
+				public void write(byte[] b, int off, int len){
+				}
+			}, digest)));
+			out.writeInt(ENGINE_VERSION);
+			writeString(out, kind);
+			writeString(out, options);
+		}
+
+		String finish() throws IOException{
+			out.flush();
+			byte[] hash = digest.digest();
+			StringBuilder sb = new StringBuilder(hash.length * 2);
+			for(byte b: hash){
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		}
+	}
+
+	/*
+	 * a cached result: the expression, the size of the automaton, how long the
+	 * conversion took when it was run and, for a portfolio, the winning ordering
+	 */
+	public static class Entry {
+
+		private final String expression;
+		private final int states, transitions;
+		private final long conversionMillis;
+		private final String ordering;
+
+		public Entry(String expression, int states, int transitions, long conversionMillis, String ordering){
+			this.expression = expression;
+			this.states = states;
+			this.transitions = transitions;
+			this.conversionMillis = conversionMillis;
+			this.ordering = ordering;
+		}
+
+		public String getExpression(){
+			return expression;
+		}
+
+		public int getStates(){
+			return states;
+		}
+
+		public int getTransitions(){
+			return transitions;
+		}
+
+		public long getConversionMillis(){
+			return conversionMillis;
+		}
+
+		public String getOrdering(){
+			return ordering;
+		}
+	}
+}
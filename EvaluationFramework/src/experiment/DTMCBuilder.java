@@ -0,0 +1,121 @@
+package experiment;
+
+import java.math.BigDecimal;
+
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+import transitiongraph.io.TraHandler;
+import transitiongraph.io.TrabHandler;
+
+/*
+ * builds a dtmc while a tra or trab file is read, without collecting the lines
+ * first.
+ *
+ * for a uniform file the chain is sized from the header line, the states are
+ * 0..n-1, 0 is initial and n-1 is final. for a non-uniform file the states are
+ * created when they are first used and the first initial id becomes the
+ * initial state.
+ *
+ * every transition is labeled with the id of its target state, e.g. "s4",
+ * unless the trab file has its own labels
+ */
+public class DTMCBuilder implements TraHandler, TrabHandler {
+
+	private DiscreteTimeMarkovChain dtmc;
+	private ProbState[] states = new ProbState[16];
+	private String[] labels = new String[16];
+	private boolean fixedStates = false;
+	private int[] initialIds, finalIds;
+
+	public void header(int numberOfStates, int numberOfTransitions){
+		if(numberOfStates <= 0){
+			throw new IllegalArgumentException("the number of states must be positive, not " + numberOfStates);
+		}
+		dtmc = new DiscreteTimeMarkovChain(numberOfStates, Math.max(numberOfTransitions, 0));
+		states = new ProbState[numberOfStates];
+		labels = new String[numberOfStates];
+		for(int i=0; i<numberOfStates; i++){
+			states[i] = dtmc.createStateWithId(i);
+		}
+		fixedStates = true;
+		dtmc.setInitialState(states[0]);
+		dtmc.addFinalState(states[numberOfStates-1]);
+	}
+
+	public void states(int[] ids, int numberOfTransitions){
+		dtmc = new DiscreteTimeMarkovChain(ids.length, numberOfTransitions);
+		for(int id: ids){
+			getState(id);
+		}
+	}
+
+	public void initialStates(int[] ids){
+		initialIds = ids;
+	}
+
+	public void finalStates(int[] ids){
+		finalIds = ids;
+	}
+
+	public void transition(int source, int target, long unscaledProbability, int scale){
+		addTransition(source, target, BigDecimal.valueOf(unscaledProbability, scale));
+	}
+
+	public void transition(int source, int target, double probability, String label){
+		dtmc().addTransition(new ProbTransition(getState(source), getState(target),
+				label != null ? label : getLabel(target), BigDecimal.valueOf(probability)));
+	}
+
+	public void addTransition(int source, int target, BigDecimal probability){
+		dtmc().addTransition(new ProbTransition(getState(source), getState(target),
+				getLabel(target), probability));
+	}
+
+	/*
+	 * returns the finished dtmc
+	 */
+	public DiscreteTimeMarkovChain getDTMC(){
+		DiscreteTimeMarkovChain result = dtmc();
+		if(initialIds != null){
+			result.setInitialState(getState(initialIds[0]));
+		}
+		if(finalIds != null){
+			for(int id: finalIds){
+				result.addFinalState(getState(id));
+			}
+		}
+		return result;
+	}
+
+	private DiscreteTimeMarkovChain dtmc(){
+		if(dtmc == null) dtmc = new DiscreteTimeMarkovChain();
+		return dtmc;
+	}
+
+	private ProbState getState(int id){
+		if(id < 0){
+			throw new IllegalArgumentException("state ids must not be negative, not " + id);
+		}
+		if(fixedStates && id >= states.length){
+			throw new IllegalArgumentException("state " + id + " does not exist, the header declares "
+					+ states.length + " states");
+		}
+		if(id >= states.length){
+			int length = Math.max(states.length * 2, id + 1);
+			ProbState[] grownStates = new ProbState[length];
+			System.arraycopy(states, 0, grownStates, 0, states.length);
+			states = grownStates;
+			String[] grownLabels = new String[length];
+			System.arraycopy(labels, 0, grownLabels, 0, labels.length);
+			labels = grownLabels;
+		}
+		if(states[id] == null) states[id] = dtmc().createStateWithId(id);
+		return states[id];
+	}
+
+	private String getLabel(int target){
+		if(labels[target] == null) labels[target] = "s" + target;
+		return labels[target];
+	}
+}
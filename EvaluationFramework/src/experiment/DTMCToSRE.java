@@ -1,72 +1,123 @@
 package experiment;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.math.BigDecimal;
+import java.io.IOException;
 
 import probautomata.ProbState;
-import probautomata.ProbTransition;
 import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
 import probautomata.dtmc.DiscreteTimeMarkovChain;
+import probautomata.dtmc.EliminationOrdering;
+import probautomata.dtmc.PortfolioConverter;
+import transitiongraph.io.TraReader;
+import transitiongraph.io.TrabFormat;
 
 public class DTMCToSRE {
 	
 	public static String dtmcToSRE(DiscreteTimeMarkovChain dtmc){
 		
+		prepare(dtmc);
+		DTMCToStochasticRegularExpressionConverter.convertToGTG(dtmc);
+		
+		String computedRE = DTMCToStochasticRegularExpressionConverter.getExpressionFromGTG(dtmc);
+		return computedRE;
+	}
+	
+	/*
+	 * races the given elimination orderings and returns the shortest SRE found
+	 * within the time budget, or null if no ordering finished in time
+	 */
+	public static String dtmcToSRE(DiscreteTimeMarkovChain dtmc, EliminationOrdering[] orderings,
+			long timeBudgetMillis){
+		
+		prepare(dtmc);
+		return new PortfolioConverter(orderings).convert(dtmc, timeBudgetMillis).getExpression();
+	}
+	
+	/*
+	 * like dtmcToSRE(dtmc), but looks the chain up in the cache first and
+	 * stores new results
+	 */
+	public static String dtmcToSRE(DiscreteTimeMarkovChain dtmc, ConversionCache cache) throws IOException{
+		
+		String key = ConversionCache.key(dtmc, "sre");
+		ConversionCache.Entry entry = cache.get(key);
+		if(entry != null) return entry.getExpression();
+		
+		int states = dtmc.getStates().length, transitions = dtmc.getTransitions().length;
+		long start = System.nanoTime();
+		String computedRE = dtmcToSRE(dtmc);
+		cache.put(key, new ConversionCache.Entry(computedRE, states, transitions,
+				(System.nanoTime() - start) / 1000000, null));
+		return computedRE;
+	}
+	
+	/*
+	 * like the portfolio dtmcToSRE, but looks the chain up in the cache first.
+	 * the orderings are part of the key, the budget is not: only results of
+	 * races in which no ordering timed out are stored, and those don't depend
+	 * on the budget
+	 */
+	public static String dtmcToSRE(DiscreteTimeMarkovChain dtmc, EliminationOrdering[] orderings,
+			long timeBudgetMillis, ConversionCache cache) throws IOException{
+		
+		StringBuilder options = new StringBuilder("portfolio");
+		for(EliminationOrdering ordering: orderings){
+			options.append(',').append(ordering.getName());
+		}
+		String key = ConversionCache.key(dtmc, options.toString());
+		ConversionCache.Entry entry = cache.get(key);
+		if(entry != null) return entry.getExpression();
+		
+		int states = dtmc.getStates().length, transitions = dtmc.getTransitions().length;
+		long start = System.nanoTime();
+		prepare(dtmc);
+		PortfolioConverter.Result result = new PortfolioConverter(orderings).convert(dtmc, timeBudgetMillis);
+		if(result.getExpression() != null && result.getTimedOut() == 0){
+			cache.put(key, new ConversionCache.Entry(result.getExpression(), states, transitions,
+					(System.nanoTime() - start) / 1000000, result.getOrdering().getName()));
+		}
+		return result.getExpression();
+	}
+	
+	/*
+	 * the ordering independent part: simple automaton with weighted probabilities
+	 */
+	private static void prepare(DiscreteTimeMarkovChain dtmc){
+		
 		DTMCToStochasticRegularExpressionConverter.convertToSimpleAutomaton(dtmc);
+		weightTransitionProbabilities(dtmc);
+	}
+	
+	/*
+	 * normalises the outgoing probabilities of every state of a simple
+	 * automaton but the initial one
+	 */
+	public static void weightTransitionProbabilities(DiscreteTimeMarkovChain dtmc){
+		
 		for(ProbState state: dtmc.getStates()){
 			//don't weight the transitions from the initial state 
 			if(state.equals(dtmc.getInitialState())) continue;
 			dtmc.weightTransitionProbabilities(state);
 		}
-		DTMCToStochasticRegularExpressionConverter.convertToGTG(dtmc);
-		
-		String computedRE = DTMCToStochasticRegularExpressionConverter.getExpressionFromGTG(dtmc);
-		return computedRE;
 	}
 	
-	public static DiscreteTimeMarkovChain constructDTMCFromFile(File f){
-		DiscreteTimeMarkovChain dtmc = new DiscreteTimeMarkovChain();
-		int fromStateId, toStateId, numberOfStates;
-		BigDecimal bd;
-		double temp;
-		String expr;
-		String line;
-		try{
-			BufferedReader reader = new BufferedReader(new FileReader(f.getAbsolutePath()));
-
-			line = reader.readLine();
-			numberOfStates = Integer.parseInt(line.split(" ")[0]);
-			
-			if(numberOfStates > 500){
-				reader.close();
-				throw new Exception();
-			}
-			
-			for(int i=0; i<numberOfStates; i++){
-				dtmc.createStateWithId(i);
-			}
-			dtmc.setInitialState(dtmc.getStateWithID(0));
-			dtmc.addFinalState(dtmc.getStateWithID(numberOfStates-1));
-			
-			while((line = reader.readLine()) != null){
-				temp = Double.parseDouble(line.split(" ")[2]);
-				bd = BigDecimal.valueOf(temp);
-				expr = "s" + line.split(" ")[1];
-				fromStateId = Integer.parseInt(line.split(" ")[0]);
-				toStateId = Integer.parseInt(line.split(" ")[1]);
-				
-				dtmc.addTransition(new ProbTransition(dtmc.getStateWithID
-						(fromStateId), dtmc.getStateWithID(toStateId), expr, bd));
-			}
-
-			reader.close();
-		} catch (Exception e){
-			dtmc = null;
+	/*
+	 * reads a uniform tra file, errors are reported with their line number
+	 */
+	public static DiscreteTimeMarkovChain constructDTMCFromFile(File f) throws IOException{
+		return constructDTMCFromFile(f, true);
+	}
+	
+	/*
+	 * trab files are recognised by their extension and need no uniform flag
+	 */
+	public static DiscreteTimeMarkovChain constructDTMCFromFile(File f, boolean uniform) throws IOException{
+		if(f.getName().endsWith("." + TrabFormat.EXTENSION)){
+			return ProbAutomatonTrab.read(f);
 		}
-		return dtmc;
-		
+		DTMCBuilder builder = new DTMCBuilder();
+		TraReader.readFile(f, builder, uniform);
+		return builder.getDTMC();
 	}
 	
 }
@@ -1,12 +1,14 @@
 package experiment;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 
+import automata.State;
 import automata.fsa.FSAToRegularExpressionConverter;
 import automata.fsa.FSATransition;
 import automata.fsa.FiniteStateAutomaton;
+import transitiongraph.io.TraHandler;
+import transitiongraph.io.TraReader;
 
 public class FSAToRegex {
 
@@ -18,37 +20,64 @@ public class FSAToRegex {
 		return computedRE;
 	}
 	
+	/*
+	 * like fsaToRegex(fsa), but looks the automaton up in the cache first and
+	 * stores new results
+	 */
+	public static String fsaToRegex(FiniteStateAutomaton fsa, ConversionCache cache) throws IOException{
+		
+		String key = ConversionCache.key(fsa, "regex");
+		ConversionCache.Entry entry = cache.get(key);
+		if(entry != null) return entry.getExpression();
+		
+		int states = fsa.getStates().length, transitions = fsa.getTransitions().length;
+		long start = System.nanoTime();
+		String computedRE = fsaToRegex(fsa);
+		cache.put(key, new ConversionCache.Entry(computedRE, states, transitions,
+				(System.nanoTime() - start) / 1000000, null));
+		return computedRE;
+	}
+	
 	public static FiniteStateAutomaton constructFSAFromFile(File f){
-		FiniteStateAutomaton fsa = new FiniteStateAutomaton();
-		int fromStateId, toStateId, numberOfStates;
-		String expr;
-		String line;
+		FSAHandler handler = new FSAHandler();
 		try{
-			BufferedReader reader = new BufferedReader(new FileReader(f.getAbsolutePath()));
-
-			line = reader.readLine();
-			numberOfStates = Integer.parseInt(line.split(" ")[0]);
-			
+			TraReader.readFile(f, handler, true);
+		} catch (Exception e){
+			return null;
+		}
+		return handler.fsa;
+	}
+	
+	/*
+	 * builds the fsa while the tra file is read, states are numbered 0..n-1
+	 */
+	private static class FSAHandler implements TraHandler {
+		
+		FiniteStateAutomaton fsa = new FiniteStateAutomaton();
+		State[] states;
+		String[] labels;
+		
+		public void header(int numberOfStates, int numberOfTransitions){
+			states = new State[numberOfStates];
+			labels = new String[numberOfStates];
 			for(int i=0; i<numberOfStates; i++){
-				fsa.createStateWithId(i);
-			}
-			fsa.setInitialState(fsa.getStateWithID(0));
-			fsa.addFinalState(fsa.getStateWithID(numberOfStates-1));
-			
-			while((line = reader.readLine()) != null){
-				expr = "s" + line.split(" ")[1];
-				fromStateId = Integer.parseInt(line.split(" ")[0]);
-				toStateId = Integer.parseInt(line.split(" ")[1]);
-				
-				fsa.addTransition(new FSATransition(fsa.getStateWithID
-						(fromStateId), fsa.getStateWithID(toStateId), expr));
+				states[i] = fsa.createStateWithId(i);
 			}
-
-			reader.close();
-		} catch (Exception e){
-			fsa = null;
+			fsa.setInitialState(states[0]);
+			fsa.addFinalState(states[numberOfStates-1]);
+		}
+		
+		public void initialStates(int[] ids){
+		}
+		
+		public void finalStates(int[] ids){
+		}
+		
+		public void transition(int source, int target, long unscaledProbability, int scale){
+			//the label is the id of the target state, the probability is not used
+			if(labels[target] == null) labels[target] = "s" + target;
+			fsa.addTransition(new FSATransition(states[source], states[target], labels[target]));
 		}
-		return fsa;
 	}
 	
 }
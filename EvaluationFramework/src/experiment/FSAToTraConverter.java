@@ -1,43 +1,82 @@
 package experiment;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.util.Arrays;
 
 import automata.State;
 import automata.Transition;
+import automata.fsa.FSATransition;
 import automata.fsa.FiniteStateAutomaton;
+import transitiongraph.io.TraWriter;
+import transitiongraph.io.TrabWriter;
 
+/*
+ * writes fsas as tra files, a transition at a time, see TraWriter. every
+ * transition has probability 1 because an fsa has none.
+ *
+ * an fsa with the states 0..n-1, initial state 0 and the single final state
+ * n-1 is written as a uniform file, which FSAToRegex.constructFSAFromFile
+ * reads back; any other as a non-uniform one.
+ */
 public class FSAToTraConverter {
 
 	public static void fsaToTra(FiniteStateAutomaton fsa, String pathToOutputDir)
-			throws FileNotFoundException{
-		
-		PrintWriter pw = new PrintWriter(new File(pathToOutputDir + "out.tra"));
-		StringBuilder fsaData = new StringBuilder();
-		
-		int numberOfStates = fsa.getStates().length;
-		int numberOfTransitions = fsa.getTransitions().length;
-		
-		fsaData.append(numberOfStates);
-		fsaData.append(" ");
-		fsaData.append(numberOfTransitions);
-		fsaData.append("\n");
-		
+			throws IOException{
+
+		fsaToTra(fsa, new File(pathToOutputDir + "out.tra"));
+		System.out.println("Done. Results are in the file " + pathToOutputDir + "out.tra");
+	}
+
+	public static void fsaToTra(FiniteStateAutomaton fsa, File traFile) throws IOException{
+		TraWriter writer = new TraWriter(traFile);
+		try{
+			State[] states = fsa.getStates();
+			if(isUniform(fsa)){
+				writer.header(states.length, fsa.getTransitions().length);
+			} else {
+				State initial = fsa.getInitialState();
+				writer.initialStates(initial != null ? new int[]{initial.getID()} : new int[0]);
+				State[] finalStates = fsa.getFinalStates();
+				int[] finalIds = new int[finalStates.length];
+				for(int i=0; i<finalIds.length; i++) finalIds[i] = finalStates[i].getID();
+				Arrays.sort(finalIds);
+				writer.finalStates(finalIds);
+			}
+			for(State state: states){
+				for(Transition transition: fsa.getTransitionsFromState(state)){
+					writer.transition(state.getID(), transition.getToState().getID(), 1, 0);
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/*
+	 * the trab file keeps the labels of the transitions
+	 */
+	public static void fsaToTrab(FiniteStateAutomaton fsa, File trabFile) throws IOException{
+		TrabWriter writer = new TrabWriter(false);
+		for(State state: fsa.getStates()){
+			writer.addState(state.getID(), state == fsa.getInitialState(), fsa.isFinalState(state));
+		}
 		for(State state: fsa.getStates()){
 			for(Transition transition: fsa.getTransitionsFromState(state)){
-				fsaData.append(transition.getFromState().getID());
-				fsaData.append(" ");
-				fsaData.append(transition.getToState().getID());
-				fsaData.append(" ");
-				fsaData.append(1); //probability is 1 because its not a PA 
-				fsaData.append("\n");
+				writer.addTransition(state.getID(), transition.getToState().getID(), 1,
+						((FSATransition) transition).getLabel());
 			}
 		}
-		
-		pw.write(fsaData.toString());
-		pw.close();
-		System.out.println("Done. Results are in the file " + pathToOutputDir + "out.tra");
-		
+		writer.write(trabFile);
+	}
+
+	public static boolean isUniform(FiniteStateAutomaton fsa){
+		State[] states = fsa.getStates();
+		int n = states.length;
+		// the states are sorted by id
+		if(n == 0 || states[0].getID() != 0 || states[n-1].getID() != n-1) return false;
+		State[] finalStates = fsa.getFinalStates();
+		return fsa.getInitialState() == states[0]
+				&& finalStates.length == 1 && finalStates[0] == states[n-1];
 	}
 }
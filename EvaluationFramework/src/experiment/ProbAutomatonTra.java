@@ -0,0 +1,59 @@
+package experiment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import probautomata.ProbAutomaton;
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+import transitiongraph.io.TraWriter;
+
+/*
+ * writes prob automata as tra files with their exact probabilities, a
+ * transition at a time, see TraWriter. trailing zeros are left out, e.g. 1
+ * rather than the 1.0000000000 a ProbTransition holds. labels are not part of
+ * the format; the loaders label every transition with its target state.
+ *
+ * an automaton with the states 0..n-1, initial state 0 and the single final
+ * state n-1 is written as a uniform file, any other as a non-uniform one.
+ * DTMCToSRE.constructDTMCFromFile(f, isUniform(automaton)) reads it back.
+ */
+public class ProbAutomatonTra {
+
+	public static void write(ProbAutomaton automaton, File traFile) throws IOException{
+		TraWriter writer = new TraWriter(traFile);
+		try{
+			ProbState[] states = automaton.getStates();
+			if(isUniform(automaton)){
+				writer.header(states.length, automaton.getTransitions().length);
+			} else {
+				ProbState initial = automaton.getInitialState();
+				writer.initialStates(initial != null ? new int[]{initial.getID()} : new int[0]);
+				ProbState[] finalStates = automaton.getFinalStates();
+				int[] finalIds = new int[finalStates.length];
+				for(int i=0; i<finalIds.length; i++) finalIds[i] = finalStates[i].getID();
+				Arrays.sort(finalIds);
+				writer.finalStates(finalIds);
+			}
+			for(ProbState state: states){
+				for(ProbTransition t: automaton.getTransitionsFromState(state)){
+					writer.transition(state.getID(), t.getToState().getID(), t.getProbability().stripTrailingZeros());
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	public static boolean isUniform(ProbAutomaton automaton){
+		ProbState[] states = automaton.getStates();
+		int n = states.length;
+		// the states are sorted by id
+		if(n == 0 || states[0].getID() != 0 || states[n-1].getID() != n-1) return false;
+		ProbState[] finalStates = automaton.getFinalStates();
+		return automaton.getInitialState() == states[0]
+				&& finalStates.length == 1 && finalStates[0] == states[n-1];
+	}
+
+}
@@ -0,0 +1,46 @@
+package experiment;
+
+import java.io.File;
+import java.io.IOException;
+
+import probautomata.ProbAutomaton;
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+import transitiongraph.io.TrabReader;
+import transitiongraph.io.TrabWriter;
+
+/*
+ * stores prob automata in the binary trab format, see TrabFormat
+ */
+public class ProbAutomatonTrab {
+
+	public static void write(ProbAutomaton automaton, File trabFile) throws IOException{
+		write(automaton, trabFile, false);
+	}
+
+	public static void write(ProbAutomaton automaton, File trabFile, boolean floatProbabilities) throws IOException{
+		TrabWriter writer = new TrabWriter(floatProbabilities);
+		for(ProbState state: automaton.getStates()){
+			writer.addState(state.getID(), automaton.isInitialState(state), automaton.isFinalState(state));
+		}
+		for(ProbState state: automaton.getStates()){
+			for(ProbTransition t: automaton.getTransitionsFromState(state)){
+				writer.addTransition(state.getID(), t.getToState().getID(),
+						t.getProbability().doubleValue(), t.getLabel());
+			}
+		}
+		writer.write(trabFile);
+	}
+
+	/*
+	 * probabilities are read back as the shortest decimal of the stored double,
+	 * e.g. 0.1 for a transition that had 0.10 in its tra file
+	 */
+	public static DiscreteTimeMarkovChain read(File trabFile) throws IOException{
+		DTMCBuilder builder = new DTMCBuilder();
+		new TrabReader(builder).read(trabFile);
+		return builder.getDTMC();
+	}
+
+}
@@ -0,0 +1,130 @@
+package experiment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+
+import transitiongraph.TransitionGraph;
+import transitiongraph.io.TransitionGraphResources;
+
+/*
+ * measures loading and saving the emf models of the testdata with the default
+ * xmi options, the tuned xmi options and the binary resource format.
+ *
+ * arguments: [<emf-dir>] [<iterations>], the directory is searched
+ * recursively for xmi files. every measurement is repeated the given number
+ * of times after as many warm-up runs, and the average is printed.
+ */
+public class ResourceBenchmark {
+
+	private static int iterations = 5;
+	private static File tempDir;
+
+	public static void main(String[] args) throws IOException{
+		String emfDirectory = args.length > 0 ? args[0] : "../ExperimentalData/testdata/emf";
+		if(args.length > 1) iterations = Integer.parseInt(args[1]);
+		tempDir = File.createTempFile("resources", "");
+		tempDir.delete();
+		tempDir.mkdir();
+
+		System.out.println(String.format("%-40s %10s %10s %10s | %10s %10s %10s | %10s %10s",
+				"model", "load xmi", "tuned", "binary", "save xmi", "tuned", "binary", "xmi size", "bin size"));
+		benchmarkDirectory(new File(emfDirectory));
+
+		for(File f: tempDir.listFiles()) f.delete();
+		tempDir.delete();
+	}
+
+	private static void benchmarkDirectory(File directory) throws IOException{
+		File[] files = directory.listFiles();
+		if(files == null) return;
+		for(File file: files){
+			if(file.isDirectory()) benchmarkDirectory(file);
+			else if(file.getName().endsWith("." + TransitionGraphResources.XMI_EXTENSION)) benchmarkModel(file);
+		}
+	}
+
+	private static void benchmarkModel(File xmiFile) throws IOException{
+		final URI xmi = URI.createFileURI(xmiFile.getAbsolutePath());
+		String name = xmiFile.getName().replace(".xmi", "");
+		final URI xmiOut = URI.createFileURI(new File(tempDir, name + ".xmi").getAbsolutePath());
+		final URI binary = URI.createFileURI(new File(tempDir, name + "." + TransitionGraphResources.BINARY_EXTENSION)
+				.getAbsolutePath());
+		final TransitionGraph tg = TransitionGraphResources.load(xmi);
+		TransitionGraphResources.save(tg, binary);
+
+		double loadPlain = measure(new Task(){
+			public void run() throws IOException{
+				new ResourceSetImpl().getResource(xmi, true);
+			}
+		});
+		double loadTuned = measure(new Task(){
+			public void run() throws IOException{
+				TransitionGraphResources.load(xmi);
+			}
+		});
+		double loadBinary = measure(new Task(){
+			public void run() throws IOException{
+				TransitionGraphResources.load(binary);
+			}
+		});
+		double savePlain = measure(new Task(){
+			public void run() throws IOException{
+				save(tg, xmiOut, Collections.emptyMap());
+			}
+		});
+		double saveTuned = measure(new Task(){
+			public void run() throws IOException{
+				save(tg, xmiOut, TransitionGraphResources.getSaveOptions());
+			}
+		});
+		double saveBinary = measure(new Task(){
+			public void run() throws IOException{
+				save(tg, binary, TransitionGraphResources.getSaveOptions());
+			}
+		});
+
+		System.out.println(String.format("%-40s %10.2f %10.2f %10.2f | %10.2f %10.2f %10.2f | %10d %10d",
+				xmiFile.getParentFile().getName() + "/" + name, loadPlain, loadTuned, loadBinary,
+				savePlain, saveTuned, saveBinary, xmiFile.length(), new File(binary.toFileString()).length()));
+	}
+
+	/*
+	 * saves the graph into a new resource and takes it back out again, so
+	 * the graph can be saved repeatedly
+	 */
+	private static void save(TransitionGraph tg, URI uri, Map<?, ?> options) throws IOException{
+		ResourceSet resSet = TransitionGraphResources.createResourceSet();
+		Resource resource = resSet.createResource(uri);
+		resource.getContents().add(tg);
+		try{
+			resource.save(options);
+		} finally {
+			resource.getContents().remove(tg);
+		}
+	}
+
+	/*
+	 * returns the average time of a run in ms
+	 */
+	private static double measure(Task task) throws IOException{
+		for(int i=0; i<iterations; i++){
+			task.run();
+		}
+		long start = System.nanoTime();
+		for(int i=0; i<iterations; i++){
+			task.run();
+		}
+		return (System.nanoTime() - start) / 1e6 / iterations;
+	}
+
+	private interface Task {
+		void run() throws IOException;
+	}
+}
@@ -0,0 +1,81 @@
+package experiment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.EList;
+
+import automata.State;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+import transitiongraph.Transition;
+import transitiongraph.TransitionGraph;
+
+/*
+ * bridges the emf transition graphs of the testdata to the automata the
+ * converters work on. the states and the transitions of the graph are walked
+ * once each, the labels and ids of the graph are kept.
+ */
+public class TransitionGraphToAutomaton {
+
+	/*
+	 * the chain is presized from the graph, the first initial state of the
+	 * graph becomes the initial state of the chain
+	 */
+	public static DiscreteTimeMarkovChain toDTMC(TransitionGraph tg){
+		EList<transitiongraph.State> states = tg.getStates();
+		EList<Transition> transitions = tg.getTransitions();
+
+		int[] ids = new int[states.size()];
+		int[] initialIds = new int[states.size()];
+		int[] finalIds = new int[states.size()];
+		int initialCount = 0, finalCount = 0;
+		for(int i=0; i<ids.length; i++){
+			transitiongraph.State s = states.get(i);
+			ids[i] = s.getId();
+			if(s.isIsInitial()) initialIds[initialCount++] = s.getId();
+			if(s.isIsFinal()) finalIds[finalCount++] = s.getId();
+		}
+
+		DTMCBuilder builder = new DTMCBuilder();
+		builder.states(ids, transitions.size());
+		if(initialCount > 0) builder.initialStates(trim(initialIds, initialCount));
+		builder.finalStates(trim(finalIds, finalCount));
+		for(int i=0; i<transitions.size(); i++){
+			Transition t = transitions.get(i);
+			builder.transition(t.getSource().getId(), t.getTarget().getId(), t.getProbability(), t.getLabel());
+		}
+		return builder.getDTMC();
+	}
+
+	/*
+	 * the probabilities of the graph are dropped
+	 */
+	public static FiniteStateAutomaton toFSA(TransitionGraph tg){
+		EList<transitiongraph.State> states = tg.getStates();
+		EList<Transition> transitions = tg.getTransitions();
+		FiniteStateAutomaton fsa = new FiniteStateAutomaton();
+
+		Map<transitiongraph.State, State> stateMap = new HashMap<transitiongraph.State, State>(states.size() * 2);
+		for(int i=0; i<states.size(); i++){
+			transitiongraph.State s = states.get(i);
+			State state = fsa.createStateWithId(s.getId());
+			stateMap.put(s, state);
+			if(s.isIsInitial() && fsa.getInitialState() == null) fsa.setInitialState(state);
+			if(s.isIsFinal()) fsa.addFinalState(state);
+		}
+		for(int i=0; i<transitions.size(); i++){
+			Transition t = transitions.get(i);
+			fsa.addTransition(new FSATransition(stateMap.get(t.getSource()), stateMap.get(t.getTarget()),
+					t.getLabel()));
+		}
+		return fsa;
+	}
+
+	private static int[] trim(int[] ids, int count){
+		int[] result = new int[count];
+		System.arraycopy(ids, 0, result, 0, count);
+		return result;
+	}
+}
@@ -2,21 +2,14 @@ package experiment;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Map;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
-import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
 
 import transitiongraph.State;
-import transitiongraph.Transition;
 import transitiongraph.TransitionGraph;
-import transitiongraph.TransitiongraphFactory;
-import transitiongraph.TransitiongraphPackage;
+import transitiongraph.impl.TransitionGraphBuilder;
+import transitiongraph.io.TransitionGraphResources;
 
 public class TransitionGraphUniformer {
 	
@@ -32,48 +25,28 @@ public class TransitionGraphUniformer {
 	
 	private static void getSingleInitialState(TransitionGraph tg){
 		
-		EList<State> states = tg.getStates();
-		EList<Transition> transitions = tg.getTransitions();
-		State newInitial = TransitiongraphFactory.eINSTANCE.createState();
-		
-		newInitial.setId(getHighestId(tg) + 1);
-		newInitial.setIsFinal(false);
-		newInitial.setIsInitial(true);
-		for(State state: states){
+		TransitionGraphBuilder builder = new TransitionGraphBuilder(tg);
+		State newInitial = builder.addState(getHighestId(tg) + 1, true, false);
+		for(State state: tg.getStates()){
 			if(state.isIsInitial()){
 				state.setIsInitial(false);
-				Transition t = TransitiongraphFactory.eINSTANCE.createTransition();
-				t.setLabel("");
-				t.setProbability(1.0d);
-				t.setSource(newInitial);
-				t.setTarget(state);
-				transitions.add(t);
+				builder.addTransition(newInitial, state, "", 1.0d);
 			}
 		}
-		states.add(newInitial);
+		builder.build();
 	}
 	
 	private static void getSingleFinalState(TransitionGraph tg){
 		
-		EList<State> states = tg.getStates();
-		State newFinal = TransitiongraphFactory.eINSTANCE.createState();
-		EList<Transition> transitions = tg.getTransitions();
-		
-		newFinal.setId(getHighestId(tg) + 1);
-		newFinal.setIsFinal(true);
-		newFinal.setIsInitial(false);
-		for(State state: states){
+		TransitionGraphBuilder builder = new TransitionGraphBuilder(tg);
+		State newFinal = builder.addState(getHighestId(tg) + 1, false, true);
+		for(State state: tg.getStates()){
 			if(state.isIsFinal()){
 				state.setIsFinal(false);
-				Transition t = TransitiongraphFactory.eINSTANCE.createTransition();
-				t.setLabel("");
-				t.setProbability(1.0d);
-				t.setSource(state);
-				t.setTarget(newFinal);
-				transitions.add(t);
+				builder.addTransition(state, newFinal, "", 1.0d);
 			}
 		}
-		states.add(newFinal);
+		builder.build();
 	}
 	
 	/*
@@ -119,20 +92,7 @@ public class TransitionGraphUniformer {
 		
 		//String uri = "../ExperimentalData/testdata/emf/task-extension1/" + modelName + ".xmi";
 		
-		TransitiongraphPackage.eINSTANCE.eClass();
-		
-		Resource.Factory.Registry reg = Resource.Factory.Registry.INSTANCE;
-        Map<String, Object> m = reg.getExtensionToFactoryMap();
-        m.put("xmi", new XMIResourceFactoryImpl());
-        
-        ResourceSet resSet = new ResourceSetImpl();
-        
-        Resource resource = resSet.getResource(URI
-                .createURI(uri), true);
-        
-        TransitionGraph tg = (TransitionGraph) resource.getContents().get(0);
-        
-        return tg;
+		return TransitionGraphResources.load(URI.createURI(uri));
 	}
 	
 	/*
@@ -140,12 +100,8 @@ public class TransitionGraphUniformer {
 	 */
 	public static void TGtoXMI(TransitionGraph tg, String outputDirectory){
 		
-		ResourceSet resSet = new ResourceSetImpl();
-		Resource resource = resSet.createResource(URI.createURI(outputDirectory + File.separator
-				+ "out.xmi"));
-		resource.getContents().add(tg);
 		try {
-			resource.save(Collections.EMPTY_MAP);
+			TransitionGraphResources.save(tg, URI.createURI(outputDirectory + File.separator + "out.xmi"));
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
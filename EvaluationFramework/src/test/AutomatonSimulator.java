@@ -0,0 +1,276 @@
+package test;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.EList;
+
+import probautomata.ProbAutomaton;
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+import transitiongraph.Transition;
+import transitiongraph.TransitionGraph;
+
+/*
+ * runs words on the model itself, to know whether it accepts them without
+ * going through a converted expression.
+ *
+ * the states of the model are numbered densely, and a label of several
+ * characters is a chain of steps through states of its own, so words are read
+ * a character at a time just like SREMatcher reads them: the word s1s12 is
+ * accepted by the labels s1 and s12 as well as by s1s1 and 2. empty and
+ * missing labels are epsilon transitions.
+ *
+ * the set of active states is a bitset together with the list of its
+ * members, so a step costs the outgoing transitions of the active states, not
+ * the size of the model. the transitions of every state are kept in flat
+ * arrays sorted by source.
+ *
+ * the graph is shared, the state sets are not: a simulator must only be used
+ * by one thread at a time, newSimulator gives another one for the same model.
+ */
+public class AutomatonSimulator {
+
+	private final Graph graph;
+
+	private long[] current, next;
+	private int[] currentList, nextList;
+	private int currentSize, nextSize;
+
+	private AutomatonSimulator(Graph graph){
+		this.graph = graph;
+		current = new long[(graph.size + 63) >>> 6];
+		next = new long[current.length];
+		currentList = new int[16];
+		nextList = new int[16];
+	}
+
+	/*
+	 * the first initial state of the graph is the initial state, as in
+	 * TransitionGraphToAutomaton
+	 */
+	public static AutomatonSimulator fromTransitionGraph(TransitionGraph tg){
+		EList<transitiongraph.State> states = tg.getStates();
+		EList<Transition> transitions = tg.getTransitions();
+		Map<transitiongraph.State, Integer> index =
+				new IdentityHashMap<transitiongraph.State, Integer>(states.size() * 2);
+		Builder builder = new Builder(states.size(), transitions.size());
+		for(int i=0; i<states.size(); i++){
+			transitiongraph.State s = states.get(i);
+			index.put(s, i);
+			if(s.isIsInitial() && builder.initial < 0) builder.initial = i;
+			if(s.isIsFinal()) builder.finalState(i);
+		}
+		for(int i=0; i<transitions.size(); i++){
+			Transition t = transitions.get(i);
+			builder.transition(index.get(t.getSource()), t.getLabel(), index.get(t.getTarget()));
+		}
+		return new AutomatonSimulator(builder.build());
+	}
+
+	public static AutomatonSimulator fromProbAutomaton(ProbAutomaton automaton){
+		ProbState[] states = automaton.getStates();
+		ProbTransition[] transitions = automaton.getTransitions();
+		Map<ProbState, Integer> index = new IdentityHashMap<ProbState, Integer>(states.length * 2);
+		Builder builder = new Builder(states.length, transitions.length);
+		for(int i=0; i<states.length; i++){
+			index.put(states[i], i);
+			if(automaton.isFinalState(states[i])) builder.finalState(i);
+		}
+		if(automaton.getInitialState() != null) builder.initial = index.get(automaton.getInitialState());
+		for(ProbTransition t: transitions){
+			builder.transition(index.get(t.getFromState()), t.getLabel(), index.get(t.getToState()));
+		}
+		return new AutomatonSimulator(builder.build());
+	}
+
+	/*
+	 * a simulator for the same model with its own state sets
+	 */
+	public AutomatonSimulator newSimulator(){
+		return new AutomatonSimulator(graph);
+	}
+
+	/*
+	 * the number of states, including those inside the labels
+	 */
+	public int getSize(){
+		return graph.size;
+	}
+
+	public boolean accepts(CharSequence word){
+		clearCurrent();
+		if(graph.initial < 0) return false;
+		nextSize = 0;
+		addNext(graph.initial);
+		closeNext();
+		swap();
+		for(int i=0; i<word.length() && currentSize > 0; i++){
+			char c = word.charAt(i);
+			nextSize = 0;
+			for(int j=0; j<currentSize; j++){
+				int s = currentList[j];
+				for(int t=graph.start[s]; t<graph.start[s + 1]; t++){
+					if(graph.label[t] == c) addNext(graph.target[t]);
+				}
+			}
+			closeNext();
+			clearCurrent();
+			swap();
+		}
+		for(int j=0; j<currentSize; j++){
+			int s = currentList[j];
+			if((graph.finals[s >>> 6] & (1L << s)) != 0) return true;
+		}
+		return false;
+	}
+
+	private void addNext(int s){
+		long bit = 1L << s;
+		if((next[s >>> 6] & bit) != 0) return;
+		next[s >>> 6] |= bit;
+		if(nextSize == nextList.length) nextList = Arrays.copyOf(nextList, nextSize * 2);
+		nextList[nextSize++] = s;
+	}
+
+	/*
+	 * adds what the next states reach over epsilons, the list is its own work
+	 * queue
+	 */
+	private void closeNext(){
+		if(graph.epsilonStart == null) return;
+		for(int j=0; j<nextSize; j++){
+			int s = nextList[j];
+			for(int t=graph.epsilonStart[s]; t<graph.epsilonStart[s + 1]; t++){
+				addNext(graph.epsilonTarget[t]);
+			}
+		}
+	}
+
+	private void clearCurrent(){
+		for(int j=0; j<currentSize; j++){
+			current[currentList[j] >>> 6] = 0;
+		}
+		currentSize = 0;
+	}
+
+	private void swap(){
+		long[] bits = current;
+		current = next;
+		next = bits;
+		int[] list = currentList;
+		currentList = nextList;
+		nextList = list;
+		currentSize = nextSize;
+		nextSize = 0;
+	}
+
+	/*
+	 * the model after the labels have been split into characters. the
+	 * transitions of state s are start[s]..start[s+1]-1, the epsilons
+	 * epsilonStart[s]..epsilonStart[s+1]-1, which are null if there are none
+	 */
+	private static class Graph {
+		int size;
+		int initial;
+		long[] finals;
+		int[] start;
+		char[] label;
+		int[] target;
+		int[] epsilonStart;
+		int[] epsilonTarget;
+	}
+
+	private static class Builder {
+
+		int size;
+		int initial = -1;
+		long[] finals;
+
+		int[] from, to;
+		char[] label;
+		int count = 0;
+
+		int[] epsilonFrom, epsilonTo;
+		int epsilonCount = 0;
+
+		Builder(int states, int transitions){
+			size = states;
+			finals = new long[(states + 63) >>> 6];
+			from = new int[Math.max(transitions, 16)];
+			to = new int[from.length];
+			label = new char[from.length];
+			epsilonFrom = new int[16];
+			epsilonTo = new int[16];
+		}
+
+		void finalState(int s){
+			finals[s >>> 6] |= 1L << s;
+		}
+
+		void transition(int source, String label, int target){
+			if(label == null || label.isEmpty()){
+				if(epsilonCount == epsilonFrom.length){
+					epsilonFrom = Arrays.copyOf(epsilonFrom, epsilonCount * 2);
+					epsilonTo = Arrays.copyOf(epsilonTo, epsilonCount * 2);
+				}
+				epsilonFrom[epsilonCount] = source;
+				epsilonTo[epsilonCount++] = target;
+				return;
+			}
+			int s = source;
+			for(int i=0; i<label.length(); i++){
+				int t = i == label.length() - 1 ? target : size++;
+				if(count == from.length){
+					from = Arrays.copyOf(from, count * 2);
+					to = Arrays.copyOf(to, count * 2);
+					this.label = Arrays.copyOf(this.label, count * 2);
+				}
+				from[count] = s;
+				to[count] = t;
+				this.label[count++] = label.charAt(i);
+				s = t;
+			}
+		}
+
+		Graph build(){
+			Graph graph = new Graph();
+			graph.size = size;
+			graph.initial = initial;
+			graph.finals = Arrays.copyOf(finals, (size + 63) >>> 6);
+			graph.start = offsets(from, count);
+			graph.label = new char[count];
+			graph.target = new int[count];
+			int[] position = Arrays.copyOf(graph.start, size);
+			for(int i=0; i<count; i++){
+				int p = position[from[i]]++;
+				graph.label[p] = label[i];
+				graph.target[p] = to[i];
+			}
+			if(epsilonCount > 0){
+				graph.epsilonStart = offsets(epsilonFrom, epsilonCount);
+				graph.epsilonTarget = new int[epsilonCount];
+				position = Arrays.copyOf(graph.epsilonStart, size);
+				for(int i=0; i<epsilonCount; i++){
+					graph.epsilonTarget[position[epsilonFrom[i]]++] = epsilonTo[i];
+				}
+			}
+			return graph;
+		}
+
+		/*
+		 * where the transitions of every state begin when sorted by source
+		 */
+		private int[] offsets(int[] sources, int count){
+			int[] start = new int[size + 1];
+			for(int i=0; i<count; i++){
+				start[sources[i] + 1]++;
+			}
+			for(int s=0; s<size; s++){
+				start[s + 1] += start[s];
+			}
+			return start;
+		}
+	}
+}
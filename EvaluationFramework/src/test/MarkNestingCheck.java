@@ -0,0 +1,60 @@
+package test;
+
+import java.math.BigDecimal;
+
+import experiment.DTMCToSRE;
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+import probautomata.dtmc.DTMCToStochasticRegularExpressionConverter;
+import probautomata.dtmc.DiscreteTimeMarkovChain;
+import probautomata.dtmc.EliminationOrderings;
+
+/*
+ * checks that the look-ahead ordering, which takes marks of its own, leaves
+ * a mark of its caller intact: the caller marks the fresh chain (mark 0),
+ * lets the ordering try its removals, changes the chain and must be able to
+ * roll back to its mark afterwards.
+ */
+public class MarkNestingCheck {
+
+	public static void main(String[] args){
+		DiscreteTimeMarkovChain dtmc = new DiscreteTimeMarkovChain();
+		ProbState s0 = dtmc.createStateWithId(0);
+		ProbState s1 = dtmc.createStateWithId(1);
+		ProbState s2 = dtmc.createStateWithId(2);
+		ProbState s3 = dtmc.createStateWithId(3);
+		dtmc.setInitialState(s0);
+		dtmc.addFinalState(s3);
+		dtmc.addTransition(new ProbTransition(s0, s1, "a", new BigDecimal("0.5")));
+		dtmc.addTransition(new ProbTransition(s0, s2, "b", new BigDecimal("0.5")));
+		dtmc.addTransition(new ProbTransition(s1, s3, "c", new BigDecimal("1")));
+		dtmc.addTransition(new ProbTransition(s2, s3, "d", new BigDecimal("1")));
+		// the form the orderings run on, prepared as DTMCToSRE does
+		DTMCToStochasticRegularExpressionConverter.convertToSimpleAutomaton(dtmc);
+		DTMCToSRE.weightTransitionProbabilities(dtmc);
+		String before = dtmc.toString();
+
+		int mark = dtmc.mark();
+		check(mark == 0, "the fresh chain should be marked at 0, not " + mark);
+		ProbState next = EliminationOrderings.lookAhead().nextState(dtmc);
+		check(next != null, "look-ahead found no state to remove");
+		check(dtmc.isRecording(), "look-ahead dropped the log of its caller");
+		check(dtmc.toString().equals(before), "look-ahead left its trial removals behind");
+
+		dtmc.addTransition(new ProbTransition(s1, s2, "e", new BigDecimal("0.5")));
+		dtmc.rollback(mark);
+		check(dtmc.toString().equals(before), "rolling back to the outer mark did not restore the chain");
+		dtmc.commit();
+		check(!dtmc.isRecording(), "commit did not stop recording");
+
+		// without an outer mark the ordering commits the log it started
+		EliminationOrderings.lookAhead().nextState(dtmc);
+		check(!dtmc.isRecording(), "look-ahead left its own log behind");
+
+		System.out.println("marks nest around look-ahead.");
+	}
+
+	private static void check(boolean condition, String message){
+		if(!condition) throw new IllegalStateException(message);
+	}
+}
@@ -0,0 +1,215 @@
+package test;
+
+import java.util.Arrays;
+
+/*
+ * the probabilities of the words a stochastic regular expression generates,
+ * read as a random process: an or takes its sides by their weights, a star
+ * with the probability p takes another round with p and ends with 1-p. see
+ * SREMatcher for the syntax and the defaults for missing weights.
+ *
+ * the process may go on forever, as after (s25)*1.00, so besides the
+ * probability that it generates exactly a word there is the probability that
+ * what it generates starts with a prefix. both are computed by the forward
+ * algorithm on the nfa of SREMatcher: the probability mass is pushed through
+ * the splits to the letters, and every letter of the word moves the mass on
+ * the letters that match it. loops of splits without letters are followed
+ * until the mass in them is negligible, whatever is left is lost.
+ */
+public class SREDistribution {
+
+	// mass below this is dropped in loops without letters
+	private static final double NEGLIGIBLE = 1e-18;
+
+	private final SREMatcher.Nfa nfa;
+
+	// for the closure
+	private final double[] pending;
+	private final boolean[] queued;
+	private final int[] queue;
+	private final double[] settled;
+	private final boolean[] isSettled;
+
+	private SREDistribution(SREMatcher.Nfa nfa){
+		this.nfa = nfa;
+		pending = new double[nfa.size];
+		queued = new boolean[nfa.size];
+		queue = new int[nfa.size];
+		settled = new double[nfa.size];
+		isSettled = new boolean[nfa.size];
+	}
+
+	/*
+	 * throws an IllegalArgumentException for malformed expressions
+	 */
+	public static SREDistribution compile(String sre){
+		return new SREDistribution(SREMatcher.parse(sre));
+	}
+
+	/*
+	 * the probability that the generated word starts with the prefix
+	 */
+	public double prefixProbability(CharSequence prefix){
+		return forward(prefix).total();
+	}
+
+	/*
+	 * the probability that the generated word is the word
+	 */
+	public double wordProbability(CharSequence word){
+		return forward(word).match(nfa);
+	}
+
+	/*
+	 * the probabilities of the sorted outcomes: prefixProbability for those
+	 * of the given length, wordProbability for shorter ones. the forward
+	 * masses of the common prefix of neighbours are shared
+	 */
+	public double[] probabilities(String[] outcomes, int length){
+		double[] result = new double[outcomes.length];
+		Vector[] masses = new Vector[length + 1];
+		masses[0] = closure(initial());
+		String previous = "";
+		for(int i=0; i<outcomes.length; i++){
+			String outcome = outcomes[i];
+			if(outcome.length() > length) throw new IllegalArgumentException("outcome longer than " + length);
+			int common = 0;
+			while(common < outcome.length() && common < previous.length()
+					&& outcome.charAt(common) == previous.charAt(common)) common++;
+			for(int d=common; d<outcome.length(); d++){
+				masses[d + 1] = closure(step(masses[d], outcome.charAt(d)));
+			}
+			Vector mass = masses[outcome.length()];
+			result[i] = outcome.length() == length ? mass.total() : mass.match(nfa);
+			previous = outcome;
+		}
+		return result;
+	}
+
+	private Vector forward(CharSequence word){
+		Vector mass = closure(initial());
+		for(int i=0; i<word.length() && mass.size > 0; i++){
+			mass = closure(step(mass, word.charAt(i)));
+		}
+		return mass;
+	}
+
+	private Vector initial(){
+		Vector v = new Vector(1);
+		v.add(nfa.start, 1);
+		return v;
+	}
+
+	/*
+	 * the mass on the letters that match c, moved past them
+	 */
+	private Vector step(Vector mass, char c){
+		Vector next = new Vector(mass.size);
+		for(int i=0; i<mass.size; i++){
+			int s = mass.states[i];
+			if(nfa.kind[s] == SREMatcher.Nfa.CHAR && nfa.label[s] == c) next.add(nfa.out1[s], mass.mass[i]);
+		}
+		return next;
+	}
+
+	/*
+	 * pushes the mass through epsilons and splits until it rests on letters
+	 * and the final state
+	 */
+	private Vector closure(Vector mass){
+		Vector result = new Vector(Math.max(mass.size, 4));
+		int top = 0;
+		for(int i=0; i<mass.size; i++){
+			top = push(mass.states[i], mass.mass[i], top);
+		}
+		// a budget for loops without letters
+		long steps = 64L * nfa.size;
+		while(top > 0 && steps-- > 0){
+			int s = queue[--top];
+			double m = pending[s];
+			pending[s] = 0;
+			queued[s] = false;
+			if(m < NEGLIGIBLE) continue;
+			switch(nfa.kind[s]){
+			case SREMatcher.Nfa.CHAR:
+			case SREMatcher.Nfa.MATCH:
+				if(!isSettled[s]){
+					isSettled[s] = true;
+					result.add(s, 0);
+				}
+				settled[s] += m;
+				break;
+			case SREMatcher.Nfa.SPLIT:
+				top = push(nfa.out1[s], m * nfa.p1[s], top);
+				top = push(nfa.out2[s], m * (1 - nfa.p1[s]), top);
+				break;
+			case SREMatcher.Nfa.EPSILON:
+				top = push(nfa.out1[s], m, top);
+				break;
+			default:
+				// the empty set generates nothing
+			}
+		}
+		while(top > 0){
+			int s = queue[--top];
+			pending[s] = 0;
+			queued[s] = false;
+		}
+		for(int i=0; i<result.size; i++){
+			int s = result.states[i];
+			result.mass[i] = settled[s];
+			settled[s] = 0;
+			isSettled[s] = false;
+		}
+		return result;
+	}
+
+	private int push(int s, double m, int top){
+		if(m == 0) return top;
+		pending[s] += m;
+		if(!queued[s]){
+			queued[s] = true;
+			queue[top++] = s;
+		}
+		return top;
+	}
+
+	/*
+	 * probability mass on nfa states
+	 */
+	private static class Vector {
+		int[] states;
+		double[] mass;
+		int size = 0;
+
+		Vector(int capacity){
+			states = new int[Math.max(capacity, 1)];
+			mass = new double[states.length];
+		}
+
+		void add(int s, double m){
+			if(size == states.length){
+				states = Arrays.copyOf(states, size * 2);
+				mass = Arrays.copyOf(mass, size * 2);
+			}
+			states[size] = s;
+			mass[size++] = m;
+		}
+
+		double total(){
+			double total = 0;
+			for(int i=0; i<size; i++){
+				total += mass[i];
+			}
+			return total;
+		}
+
+		double match(SREMatcher.Nfa nfa){
+			double match = 0;
+			for(int i=0; i<size; i++){
+				if(nfa.kind[states[i]] == SREMatcher.Nfa.MATCH) match += mass[i];
+			}
+			return match;
+		}
+	}
+}
@@ -0,0 +1,470 @@
+package test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * checks words against a (stochastic) regular expression as the converters
+ * write it, in time linear in the length of the word.
+ *
+ * the expression is compiled into a thompson nfa, which is run by a dfa built
+ * lazily from its state sets: every set of nfa states reached is a dfa state,
+ * whose transitions are computed once and cached. when the cache holds more
+ * than MAX_DFA_STATES states it is flushed and refilled as words need it.
+ *
+ * syntax: every character not listed here is a letter of the word, so s12 is
+ * the three letters s, 1 and 2. ':' and juxtaposition concatenate, '+' is or,
+ * '*' is the kleene star, and parentheses group. the probability after a
+ * star, bare (a*0.25) or in brackets (a*[0.25]), and the weights in brackets
+ * after alternatives (a[500]+b[500]) don't matter for matching, the nfa keeps
+ * them for SREDistribution. EMPTY_SET is the empty set,
+ * LAMBDA and an empty alternative, as in (+a) or (), are the empty word.
+ *
+ * the nfa is shared, the dfa cache is not: a matcher must only be used by one
+ * thread at a time, newMatcher gives another one for the same expression.
+ */
+public class SREMatcher {
+
+	public static final int MAX_DFA_STATES = 10000;
+
+	public static final char EMPTY_SET = '\u00F8';
+	public static final char LAMBDA = '\u03BB';
+
+	private final Nfa nfa;
+	private final Map<StateSet, DfaState> cache = new HashMap<StateSet, DfaState>();
+	private DfaState start;
+
+	// for the closure
+	private int[] mark = new int[0];
+	private int[] stack = new int[0];
+	private int generation = 0;
+
+	private SREMatcher(Nfa nfa){
+		this.nfa = nfa;
+	}
+
+	/*
+	 * throws an IllegalArgumentException for unbalanced parentheses or
+	 * brackets
+	 */
+	public static SREMatcher compile(String sre){
+		return new SREMatcher(parse(sre));
+	}
+
+	static Nfa parse(String sre){
+		return new Parser(sre).parse();
+	}
+
+	public static boolean matches(String sre, CharSequence word){
+		return compile(sre).matches(word);
+	}
+
+	/*
+	 * a matcher for the same expression with its own dfa cache
+	 */
+	public SREMatcher newMatcher(){
+		return new SREMatcher(nfa);
+	}
+
+	public boolean matches(CharSequence word){
+		if(start == null) start = intern(closure(new int[]{nfa.start}, 1));
+		DfaState state = start;
+		for(int i=0; i<word.length(); i++){
+			if(state.states.length == 0) return false;
+			char c = word.charAt(i);
+			DfaState next = state.get(c);
+			if(next == null){
+				next = step(state, c);
+				state.put(c, next);
+			}
+			state = next;
+		}
+		return state.accepting;
+	}
+
+	public int getCachedStates(){
+		return cache.size();
+	}
+
+	private DfaState step(DfaState state, char c){
+		int[] targets = new int[state.states.length];
+		int count = 0;
+		for(int s: state.states){
+			if(nfa.kind[s] == Nfa.CHAR && nfa.label[s] == c) targets[count++] = nfa.out1[s];
+		}
+		return intern(closure(targets, count));
+	}
+
+	/*
+	 * the letter and final states reachable from the given states over
+	 * epsilons and splits, sorted
+	 */
+	private int[] closure(int[] from, int count){
+		if(mark.length < nfa.size){
+			mark = new int[nfa.size];
+			stack = new int[nfa.size];
+			generation = 0;
+		}
+		generation++;
+		int[] result = new int[8];
+		int resultSize = 0;
+		int top = 0;
+		for(int i=0; i<count; i++){
+			top = push(from[i], top);
+		}
+		while(top > 0){
+			int s = stack[--top];
+			switch(nfa.kind[s]){
+			case Nfa.CHAR:
+			case Nfa.MATCH:
+				if(resultSize == result.length) result = Arrays.copyOf(result, resultSize * 2);
+				result[resultSize++] = s;
+				break;
+			case Nfa.SPLIT:
+				top = push(nfa.out2[s], top);
+				top = push(nfa.out1[s], top);
+				break;
+			case Nfa.EPSILON:
+				top = push(nfa.out1[s], top);
+				break;
+			default:
+				// the dead end of the empty set
+			}
+		}
+		int[] states = Arrays.copyOf(result, resultSize);
+		Arrays.sort(states);
+		return states;
+	}
+
+	private int push(int s, int top){
+		if(mark[s] != generation){
+			mark[s] = generation;
+			stack[top++] = s;
+		}
+		return top;
+	}
+
+	private DfaState intern(int[] states){
+		StateSet key = new StateSet(states);
+		DfaState state = cache.get(key);
+		if(state == null){
+			if(cache.size() >= MAX_DFA_STATES){
+				cache.clear();
+				start = null;
+			}
+			state = new DfaState(key, nfa.isAccepting(states));
+			cache.put(key, state);
+		}
+		return state;
+	}
+
+	/*
+	 * the nfa in flat arrays: a state is a letter with one successor, a split
+	 * with two, an epsilon with one, or the final state. a split goes to out1
+	 * with the probability p1 and to out2 otherwise
+	 */
+	static class Nfa {
+
+		static final int CHAR = 0, SPLIT = 1, EPSILON = 2, MATCH = 3, DEAD = 4;
+
+		int[] kind = new int[64];
+		char[] label = new char[64];
+		int[] out1 = new int[64];
+		int[] out2 = new int[64];
+		double[] p1 = new double[64];
+		int size = 0;
+		int start;
+
+		int add(int kind, char label, int out1, int out2){
+			if(size == this.kind.length){
+				int length = size * 2;
+				this.kind = Arrays.copyOf(this.kind, length);
+				this.label = Arrays.copyOf(this.label, length);
+				this.out1 = Arrays.copyOf(this.out1, length);
+				this.out2 = Arrays.copyOf(this.out2, length);
+				this.p1 = Arrays.copyOf(this.p1, length);
+			}
+			this.kind[size] = kind;
+			this.label[size] = label;
+			this.out1[size] = out1;
+			this.out2[size] = out2;
+			return size++;
+		}
+
+		int split(int out1, int out2, double p1){
+			int s = add(SPLIT, '\0', out1, out2);
+			this.p1[s] = p1;
+			return s;
+		}
+
+		boolean isAccepting(int[] states){
+			for(int s: states){
+				if(kind[s] == MATCH) return true;
+			}
+			return false;
+		}
+	}
+
+	/*
+	 * turns the expression into postfix with explicit concatenations and
+	 * empty words, and builds the nfa from that with a stack of fragments. no
+	 * recursion, so deeply nested expressions don't overflow the stack.
+	 *
+	 * a star without a probability repeats with 1/2, and an or splits by the
+	 * weights of its sides, evenly if one of them has none. the weights of an
+	 * or are the sums of those of its alternatives
+	 */
+	private static class Parser {
+
+		// the operators and the empty word, letters are stored as themselves
+		private static final int CONCAT = -1, OR = -2, STAR = -3, LEFT = -4, EPS = -5, WEIGHT = -6;
+
+		private final String sre;
+		private int[] postfix = new int[16];
+		// the probability of a star, the weight of a weight
+		private double[] values = new double[16];
+		private int postfixSize = 0;
+		private int[] operators = new int[16];
+		private int top = 0;
+
+		Parser(String sre){
+			this.sre = sre;
+		}
+
+		Nfa parse(){
+			toPostfix();
+			return build();
+		}
+
+		private void toPostfix(){
+			// whether the last thing read ends an operand
+			boolean operand = false;
+			int i = 0;
+			while(i < sre.length()){
+				char c = sre.charAt(i);
+				switch(c){
+				case '[':
+					if(!operand) emit(EPS);
+					int end = skipBracket(i);
+					emit(WEIGHT, number(i + 1, end - 1));
+					operand = true;
+					i = end;
+					break;
+				case ']':
+					throw new IllegalArgumentException("unbalanced ']' at " + i);
+				case ':':
+					i++;
+					break;
+				case '*':
+					if(!operand) emit(EPS);
+					int probabilityEnd = skipProbability(i + 1);
+					if(probabilityEnd > i + 1 && sre.charAt(i + 1) == '['){
+						emit(STAR, number(i + 2, probabilityEnd - 1));
+					} else {
+						emit(STAR, number(i + 1, probabilityEnd));
+					}
+					operand = true;
+					i = probabilityEnd;
+					break;
+				case '+':
+					if(!operand) emit(EPS);
+					while(top > 0 && operators[top - 1] == CONCAT) emit(operators[--top]);
+					push(OR);
+					operand = false;
+					i++;
+					break;
+				case '(':
+					if(operand) pushConcat();
+					push(LEFT);
+					operand = false;
+					i++;
+					break;
+				case ')':
+					if(!operand) emit(EPS);
+					while(top > 0 && operators[top - 1] != LEFT) emit(operators[--top]);
+					if(top == 0) throw new IllegalArgumentException("unbalanced ')' at " + i);
+					top--;
+					operand = true;
+					i++;
+					break;
+				default:
+					if(operand) pushConcat();
+					emit(c == LAMBDA ? EPS : c);
+					operand = true;
+					i++;
+				}
+			}
+			if(!operand) emit(EPS);
+			while(top > 0){
+				if(operators[top - 1] == LEFT) throw new IllegalArgumentException("unbalanced '('");
+				emit(operators[--top]);
+			}
+		}
+
+		/*
+		 * concatenation binds stronger than or and is left associative
+		 */
+		private void pushConcat(){
+			while(top > 0 && operators[top - 1] == CONCAT) emit(operators[--top]);
+			push(CONCAT);
+		}
+
+		private void push(int operator){
+			if(top == operators.length) operators = Arrays.copyOf(operators, top * 2);
+			operators[top++] = operator;
+		}
+
+		private int skipBracket(int i){
+			int end = sre.indexOf(']', i);
+			if(end < 0) throw new IllegalArgumentException("unbalanced '[' at " + i);
+			return end + 1;
+		}
+
+		private int skipProbability(int i){
+			if(i < sre.length() && sre.charAt(i) == '[') return skipBracket(i);
+			while(i < sre.length() && (Character.isDigit(sre.charAt(i)) || sre.charAt(i) == '.')) i++;
+			return i;
+		}
+
+		/*
+		 * the number in the given part of the expression, NaN if there is none
+		 */
+		private double number(int start, int end){
+			if(start >= end) return Double.NaN;
+			try{
+				return Double.parseDouble(sre.substring(start, end));
+			} catch (NumberFormatException e){
+				throw new IllegalArgumentException("malformed number at " + start);
+			}
+		}
+
+		private void emit(int token){
+			emit(token, Double.NaN);
+		}
+
+		private void emit(int token, double value){
+			if(postfixSize == postfix.length){
+				postfix = Arrays.copyOf(postfix, postfixSize * 2);
+				values = Arrays.copyOf(values, postfixSize * 2);
+			}
+			values[postfixSize] = value;
+			postfix[postfixSize++] = token;
+		}
+
+		/*
+		 * a fragment is a start state and an epsilon end state whose successor
+		 * is still open
+		 */
+		private Nfa build(){
+			Nfa nfa = new Nfa();
+			int[] starts = new int[16];
+			int[] ends = new int[16];
+			double[] weights = new double[16];
+			int top = 0;
+			for(int i=0; i<postfixSize; i++){
+				int token = postfix[i];
+				int start, end;
+				double weight = Double.NaN;
+				if(token == WEIGHT){
+					if(top < 1) throw new IllegalArgumentException("missing operand");
+					weights[top - 1] = values[i];
+					continue;
+				} else if(token == CONCAT || token == OR){
+					if(top < 2) throw new IllegalArgumentException("missing operand");
+					int bStart = starts[--top], bEnd = ends[top];
+					double bWeight = weights[top];
+					int aStart = starts[--top], aEnd = ends[top];
+					double aWeight = weights[top];
+					if(token == CONCAT){
+						nfa.out1[aEnd] = bStart;
+						start = aStart;
+						end = bEnd;
+					} else {
+						boolean weighted = aWeight + bWeight > 0;
+						end = nfa.add(Nfa.EPSILON, '\0', -1, -1);
+						start = nfa.split(aStart, bStart, weighted ? aWeight / (aWeight + bWeight) : 0.5);
+						nfa.out1[aEnd] = end;
+						nfa.out1[bEnd] = end;
+						weight = weighted ? aWeight + bWeight : Double.NaN;
+					}
+				} else if(token == STAR){
+					if(top < 1) throw new IllegalArgumentException("missing operand");
+					int aStart = starts[--top], aEnd = ends[top];
+					end = nfa.add(Nfa.EPSILON, '\0', -1, -1);
+					start = nfa.split(aStart, end, Double.isNaN(values[i]) ? 0.5 : values[i]);
+					nfa.out1[aEnd] = start;
+				} else if(token == EPS){
+					end = nfa.add(Nfa.EPSILON, '\0', -1, -1);
+					start = end;
+				} else {
+					char c = (char) token;
+					end = nfa.add(Nfa.EPSILON, '\0', -1, -1);
+					start = c == EMPTY_SET ? nfa.add(Nfa.DEAD, '\0', -1, -1) : nfa.add(Nfa.CHAR, c, end, -1);
+				}
+				if(top == starts.length){
+					starts = Arrays.copyOf(starts, top * 2);
+					ends = Arrays.copyOf(ends, top * 2);
+					weights = Arrays.copyOf(weights, top * 2);
+				}
+				starts[top] = start;
+				weights[top] = weight;
+				ends[top++] = end;
+			}
+			if(top != 1) throw new IllegalArgumentException("malformed expression");
+			int match = nfa.add(Nfa.MATCH, '\0', -1, -1);
+			nfa.out1[ends[0]] = match;
+			nfa.start = starts[0];
+			return nfa;
+		}
+	}
+
+	/*
+	 * the key of a dfa state, a sorted set of nfa states
+	 */
+	private static class StateSet {
+		final int[] states;
+		final int hash;
+
+		StateSet(int[] states){
+			this.states = states;
+			this.hash = Arrays.hashCode(states);
+		}
+
+		public int hashCode(){
+			return hash;
+		}
+
+		public boolean equals(Object o){
+			return o instanceof StateSet && Arrays.equals(states, ((StateSet) o).states);
+		}
+	}
+
+	private static class DfaState {
+		final StateSet key;
+		final int[] states;
+		final boolean accepting;
+		private final DfaState[] ascii = new DfaState[128];
+		private Map<Character, DfaState> other;
+
+		DfaState(StateSet key, boolean accepting){
+			this.key = key;
+			this.states = key.states;
+			this.accepting = accepting;
+		}
+
+		DfaState get(char c){
+			if(c < 128) return ascii[c];
+			return other == null ? null : other.get(c);
+		}
+
+		void put(char c, DfaState next){
+			if(c < 128){
+				ascii[c] = next;
+			} else {
+				if(other == null) other = new HashMap<Character, DfaState>();
+				other.put(c, next);
+			}
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.util.URI;
+
+import experiment.DTMCToSRE;
+import experiment.TransitionGraphToAutomaton;
+import transitiongraph.TransitionGraph;
+import transitiongraph.io.TransitionGraphResources;
+
+/*
+ * checks the weights of the expression of a chain statistically: walks of
+ * the chain are sampled by their probabilities, and the frequencies of what
+ * they generate are compared with the probabilities the expression gives.
+ *
+ * an outcome is the first prefixLength characters of a walk, or the whole
+ * word if the walk ends before in a state without outgoing transitions; see
+ * SREDistribution for its probability under the expression. the result is
+ * the total variation distance between the two distributions, with the
+ * unobserved outcomes counting at their predicted probability. even a right
+ * expression has a distance of about the sampling error, which is estimated
+ * from the predicted probabilities, and the weights are written to 3 and the
+ * star probabilities to 2 digits.
+ *
+ * arguments: <xmi-file> [<samples>] [<prefix-length>] [<seed>] [<threads>]
+ */
+public class SREWeightCheck {
+
+	public static final int CHUNK_SIZE = 1 << 16;
+
+	public static Result check(TransitionGraph tg, String sre, long samples, int prefixLength, long seed,
+			int threads){
+		final WordCorpusGenerator generator = WordCorpusGenerator.fromTransitionGraph(tg, true);
+		final int length = prefixLength;
+		final int maxSteps = 100 * (prefixLength + 1);
+		Map<String, long[]> counts = new HashMap<String, long[]>();
+		long stuck = 0;
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try{
+			SplittableRandom seeds = new SplittableRandom(seed);
+			List<Future<Map<String, long[]>>> chunks = new ArrayList<Future<Map<String, long[]>>>();
+			for(long submitted = 0; submitted < samples; submitted += CHUNK_SIZE){
+				final int size = (int) Math.min(CHUNK_SIZE, samples - submitted);
+				final SplittableRandom random = seeds.split();
+				chunks.add(executor.submit(new Callable<Map<String, long[]>>(){
+					public Map<String, long[]> call(){
+						Map<String, long[]> chunkCounts = new HashMap<String, long[]>();
+						for(int i=0; i<size; i++){
+							// walks that took too many steps are counted under null
+							String outcome = generator.prefix(random, length, maxSteps);
+							long[] count = chunkCounts.get(outcome);
+							if(count == null) chunkCounts.put(outcome, count = new long[1]);
+							count[0]++;
+						}
+						return chunkCounts;
+					}
+				}));
+			}
+			for(Future<Map<String, long[]>> chunk: chunks){
+				for(Map.Entry<String, long[]> e: get(chunk).entrySet()){
+					if(e.getKey() == null){
+						stuck += e.getValue()[0];
+						continue;
+					}
+					long[] count = counts.get(e.getKey());
+					if(count == null) counts.put(e.getKey(), count = new long[1]);
+					count[0] += e.getValue()[0];
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		String[] outcomes = counts.keySet().toArray(new String[counts.size()]);
+		Arrays.sort(outcomes);
+		double[] predicted = SREDistribution.compile(sre).probabilities(outcomes, prefixLength);
+
+		Result result = new Result();
+		result.samples = samples;
+		result.stuck = stuck;
+		result.outcomes = outcomes.length;
+		double deviation = 0, predictedMass = 0, samplingError = 0;
+		for(int i=0; i<outcomes.length; i++){
+			double empirical = (double) counts.get(outcomes[i])[0] / samples;
+			double difference = Math.abs(empirical - predicted[i]);
+			deviation += difference;
+			predictedMass += predicted[i];
+			samplingError += Math.sqrt(2 * predicted[i] * (1 - predicted[i]) / (Math.PI * samples));
+			if(difference > result.largestDifference){
+				result.largestDifference = difference;
+				result.largestOutcome = outcomes[i];
+				result.largestEmpirical = empirical;
+				result.largestPredicted = predicted[i];
+			}
+		}
+		deviation += (double) stuck / samples;
+		result.predictedMass = predictedMass;
+		result.totalVariation = (deviation + Math.max(0, 1 - predictedMass)) / 2;
+		result.samplingError = samplingError / 2;
+		return result;
+	}
+
+	private static <T> T get(Future<T> future){
+		try{
+			return future.get();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e){
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public static class Result {
+
+		private long samples, stuck;
+		private int outcomes;
+		private double predictedMass, totalVariation, samplingError;
+		private String largestOutcome;
+		private double largestDifference, largestEmpirical, largestPredicted;
+
+		public long getSamples(){
+			return samples;
+		}
+
+		/*
+		 * walks that took too many steps to generate their prefix
+		 */
+		public long getStuck(){
+			return stuck;
+		}
+
+		/*
+		 * the number of distinct outcomes sampled
+		 */
+		public int getOutcomes(){
+			return outcomes;
+		}
+
+		/*
+		 * the probability of the sampled outcomes under the expression
+		 */
+		public double getPredictedMass(){
+			return predictedMass;
+		}
+
+		public double getTotalVariation(){
+			return totalVariation;
+		}
+
+		/*
+		 * the distance to expect from sampling alone
+		 */
+		public double getSamplingError(){
+			return samplingError;
+		}
+
+		public String getLargestOutcome(){
+			return largestOutcome;
+		}
+
+		public double getLargestEmpirical(){
+			return largestEmpirical;
+		}
+
+		public double getLargestPredicted(){
+			return largestPredicted;
+		}
+
+		public String toString(){
+			return String.format(Locale.ENGLISH, "%d samples, %d outcomes (predicted mass %.6f), "
+					+ "total variation %.6f, sampling error %.6f, largest difference at '%s': %.6f sampled, "
+					+ "%.6f predicted%s", samples, outcomes, predictedMass, totalVariation, samplingError,
+					largestOutcome, largestEmpirical, largestPredicted,
+					stuck > 0 ? ", " + stuck + " walks stuck" : "");
+		}
+	}
+
+	public static void main(String[] args){
+		if(args.length < 1){
+			System.out.println("arguments: <xmi-file> [<samples>] [<prefix-length>] [<seed>] [<threads>]");
+			return;
+		}
+		File xmiFile = new File(args[0]);
+		long samples = args.length > 1 ? Long.parseLong(args[1]) : 1000000;
+		int prefixLength = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+		String modelName = xmiFile.getName().replace("." + TransitionGraphResources.XMI_EXTENSION, "");
+		TransitionGraph tg = TransitionGraphResources.load(URI.createFileURI(xmiFile.getAbsolutePath()));
+		String sre = DTMCToSRE.dtmcToSRE(TransitionGraphToAutomaton.toDTMC(tg));
+
+		long start = System.nanoTime();
+		Result result = check(tg, sre, samples, prefixLength, seed, threads);
+		System.out.println(modelName + ": " + result + " in " + (System.nanoTime() - start) / 1000000
+				+ " ms, seed " + seed);
+	}
+}
@@ -5,16 +5,29 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.PrintWriter;
-import java.util.Map;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
-import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
 
 import transitiongraph.TransitionGraph;
-import transitiongraph.TransitiongraphPackage;
+import transitiongraph.io.TransitionGraphResources;
 
 public abstract class TestFramework {
 	
@@ -23,91 +36,355 @@ public abstract class TestFramework {
 	public static String pathToPositive = "testdata/acceptedWords";
 	public static String pathToNegative = "testdata/notAcceptedWords";
 	
+	/*
+	 * every model is loaded, transformed and verified this many times before
+	 * and while it is measured, see testModelToRegex
+	 */
+	public static int warmupIterations = Integer.getInteger("test.warmup", 2);
+	public static int measurementIterations = Integer.getInteger("test.iterations", 5);
+	
+	/*
+	 * the number of models evaluated at the same time, and the names of the
+	 * models that are evaluated alone, see testAllModels
+	 */
+	public static int threads = Integer.getInteger("test.threads", 1);
+	public static Set<String> isolatedModels = new HashSet<String>(
+			Arrays.asList(System.getProperty("test.isolated", "").split(",")));
+	
+	/*
+	 * the number of threads the words of a model are checked with, it is read
+	 * when the first model is verified
+	 */
+	public static int verifyThreads = Integer.getInteger("test.verifyThreads", 1);
+	
 	public void testFSAToRegexAllModels() throws FileNotFoundException{
-		
-		PrintWriter pw = new PrintWriter(new File("testresult/result_fsa2regex.csv"));
-		File[] modelFiles = new File(pathToMainModels).listFiles();
-		String result;
-		StringBuilder resultData = new StringBuilder();
-		String transformationType = "fsa2regex";
-		
-		resultData.append("modelname,");
-		resultData.append("size of the regular expression,");
-		resultData.append("time to transform (ms),");
-		resultData.append("correctly accepted words,");
-		resultData.append("correctly not accepted words");
-		resultData.append("\n");
-		
-		for(File modelFile : modelFiles){
-			result = testModelToRegex(modelFile.getName(), transformationType);
-			resultData.append(result);
-		}
-		
-		pw.write(resultData.toString());
-        pw.close();
-        System.out.println("done!");
+		testAllModels(new File(pathToMainModels), "fsa2regex", new File("testresult/result_fsa2regex.csv"));
 	}
 	
 	public void testDTMCToSREAllModels() throws FileNotFoundException{
+		testAllModels(new File(pathToExtension2Models), "dtmc2sre", new File("testresult/result_dtmc2sre.csv"));
+	}
+	
+	/*
+	 * evaluates every model of the directory and writes one line per model,
+	 * sorted by model name, into the result file.
+	 *
+	 * with more than one thread the models are evaluated in parallel, each
+	 * loaded into its own resource set, and FSAToRegex and DTMCToSRE have to
+	 * be thread-safe. the times of models that run side by side influence
+	 * each other and their heap and gc columns are n/a; the isolated models
+	 * are therefore evaluated one by one after all others are done.
+	 */
+	public void testAllModels(File modelDirectory, final String transformationType, File resultFile)
+			throws FileNotFoundException{
 		
-		PrintWriter pw = new PrintWriter(new File("testresult/result_dtmc2sre.csv"));
-		File[] modelFiles = new File(pathToExtension2Models).listFiles();
-		String result;
-		StringBuilder resultData = new StringBuilder();
-		String transformationType = "dtmc2sre";
-		
-		resultData.append("modelname,");
-		resultData.append("size of the regular expression,");
-		resultData.append("time to transform (ms),");
-		resultData.append("correctly accepted words,");
-		resultData.append("correctly not accepted words");
-		resultData.append("\n");
+		File[] modelFiles = modelDirectory.listFiles();
+		if(modelFiles == null) throw new FileNotFoundException(modelDirectory.getPath());
+		Arrays.sort(modelFiles, new Comparator<File>(){
+			public int compare(File f1, File f2){
+				return f1.getName().compareTo(f2.getName());
+			}
+		});
 		
-		for(File modelFile : modelFiles){
-			result = testModelToRegex(modelFile.getName(), transformationType);
-			resultData.append(result);
+		String[] results = new String[modelFiles.length];
+		List<Integer> isolated = new ArrayList<Integer>();
+		if(threads > 1){
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			List<Future<String>> futures = new ArrayList<Future<String>>();
+			List<Integer> indexes = new ArrayList<Integer>();
+			try{
+				for(int i=0; i<modelFiles.length; i++){
+					if(isIsolated(modelFiles[i])){
+						isolated.add(i);
+						continue;
+					}
+					final File modelFile = modelFiles[i];
+					futures.add(executor.submit(new Callable<String>(){
+						public String call() throws FileNotFoundException{
+							return testModelToRegex(modelFile, transformationType, false);
+						}
+					}));
+					indexes.add(i);
+				}
+				for(int i=0; i<futures.size(); i++){
+					results[indexes.get(i)] = getResult(futures.get(i));
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+		} else {
+			for(int i=0; i<modelFiles.length; i++) isolated.add(i);
+		}
+		for(int i: isolated){
+			results[i] = testModelToRegex(modelFiles[i], transformationType);
 		}
 		
-		pw.write(resultData.toString());
-        pw.close();
-        System.out.println("done!");
+		PrintWriter pw = new PrintWriter(resultFile);
+		pw.write(getResultHeader());
+		for(String result: results){
+			pw.write(result);
+		}
+		pw.close();
+		System.out.println("done!");
+	}
+	
+	private static boolean isIsolated(File modelFile){
+		return isolatedModels.contains(modelFile.getName().replaceAll("\\.xmi", ""));
+	}
+	
+	private static String getResult(Future<String> future) throws FileNotFoundException{
+		try{
+			return future.get();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e){
+			if(e.getCause() instanceof FileNotFoundException) throw (FileNotFoundException) e.getCause();
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
 	}
 	
 	public String testModelToRegex(String modelFileName, String transformationType) throws FileNotFoundException{
+		return testModelToRegex(new File(pathToMainModels, modelFileName), transformationType);
+	}
+	
+	/*
+	 * runs load, transform and verify of the model warmupIterations times
+	 * without measuring and then measurementIterations times, each phase timed
+	 * on its own with nanoTime. the time to transform is the median, followed
+	 * at the end of the line by min, median, p95 and max of every phase in ms.
+	 *
+	 * the peak heap is the sum of the peak usages of the heap memory pools
+	 * during the measured iterations, the pools may peak at different times.
+	 * the heap after gc is the usage before the first measured iteration.
+	 *
+	 * the transform is measured apart: the bytes allocated by the thread
+	 * running it (median, helper threads of a conversion are not counted),
+	 * the peak heap while it runs (max), and the number and time of the
+	 * garbage collections during it (mean per iteration).
+	 *
+	 * the gc and the peaks of the pools belong to the whole jvm, so a model
+	 * that is not evaluated alone neither collects nor resets them, which
+	 * would skew the models beside it, and has n/a in the heap and gc
+	 * columns; only the allocated bytes of its thread are its own.
+	 */
+	public String testModelToRegex(File modelFile, String transformationType) throws FileNotFoundException{
+		return testModelToRegex(modelFile, transformationType, true);
+	}
+	
+	public String testModelToRegex(File modelFile, String transformationType, boolean alone)
+			throws FileNotFoundException{
+		String modelFileName = modelFile.getName();
 		String modelName;
 		String regex = "";
 		int regexSize;
 		String acceptedWordsFile, notAcceptedWordsFile;
+		String accepted = "", notAccepted = "";
 		StringBuilder resultData = new StringBuilder();
 		TransitionGraph tg;
-		long timeToTransform;
 		
 		if(!modelFileName.matches(".+\\.xmi")) return "";
 		
 		modelName = modelFileName.replaceAll("\\.xmi", "");
-		tg = getTransitionGraphFromXMI(modelName);
+		acceptedWordsFile = pathToPositive + "/" + modelName + "-positive.data";
+		notAcceptedWordsFile = pathToNegative + "/" + modelName + "-negative.data";
 		
-		timeToTransform = System.currentTimeMillis();
-		if(transformationType.equals("fsa2regex")) regex = FSAToRegex(tg);
-		else if(transformationType.equals("dtmc2sre")) regex = DTMCToSRE(tg);
-		timeToTransform = System.currentTimeMillis() - timeToTransform;
+		int warmup = Math.max(0, warmupIterations);
+		int iterations = Math.max(1, measurementIterations);
+		long[] loadTimes = new long[iterations];
+		long[] transformTimes = new long[iterations];
+		long[] verifyTimes = new long[iterations];
+		long[] transformAllocations = new long[iterations];
+		long heapAfterGC = 0;
+		long transformPeakHeap = 0;
+		long transformGCs = 0, transformGCTime = 0;
+		long[] poolPeaks = new long[getHeapPools().size()];
 		
-		regexSize = getRegexSize(regex);
+		for(int i = -warmup; i < iterations; i++){
+			if(i == 0 && alone) heapAfterGC = resetPeakHeap();
+			
+			long start = System.nanoTime();
+			tg = getTransitionGraphFromXMI(modelFile.getParent(), modelName);
+			long loaded = System.nanoTime();
+			if(i >= 0 && alone) resetPeakHeap(poolPeaks);
+			long gcs = getGCCount(), gcTime = getGCTime();
+			long allocated = getAllocatedBytes();
+			long transforming = System.nanoTime();
+			if(transformationType.equals("fsa2regex")) regex = FSAToRegex(tg);
+			else if(transformationType.equals("dtmc2sre")) regex = DTMCToSRE(tg);
+			long transformed = System.nanoTime();
+			if(i >= 0){
+				transformAllocations[i] = allocated < 0 ? -1 : getAllocatedBytes() - allocated;
+				if(alone){
+					transformGCs += getGCCount() - gcs;
+					transformGCTime += getGCTime() - gcTime;
+					transformPeakHeap = Math.max(transformPeakHeap, getPeakHeap());
+					resetPeakHeap(poolPeaks);
+				}
+			}
+			long verifying = System.nanoTime();
+			String[] passed = testWords(compileRegex(regex), acceptedWordsFile, notAcceptedWordsFile);
+			accepted = passed[0];
+			notAccepted = passed[1];
+			long verified = System.nanoTime();
+			
+			if(i >= 0){
+				loadTimes[i] = loaded - start;
+				transformTimes[i] = transformed - transforming;
+				verifyTimes[i] = verified - verifying;
+			}
+		}
+		if(alone) resetPeakHeap(poolPeaks);
+		long peakHeap = 0;
+		for(long poolPeak: poolPeaks) peakHeap += poolPeak;
 		
-		acceptedWordsFile = pathToPositive + "/" + modelName + "-positive.data";
-		notAcceptedWordsFile = pathToNegative + "/" + modelName + "-negative.data";
+		regexSize = getRegexSize(regex);
+		Arrays.sort(loadTimes);
+		Arrays.sort(transformTimes);
+		Arrays.sort(verifyTimes);
+		Arrays.sort(transformAllocations);
 		
 		resultData.append(modelName + ",");
 		resultData.append(regexSize + ",");
-		resultData.append(timeToTransform + ",");
-		resultData.append(testWords(regex,acceptedWordsFile,true) + ",");
-		resultData.append(testWords(regex,notAcceptedWordsFile,false));
+		resultData.append(toMillis(median(transformTimes)) + ",");
+		resultData.append(accepted + ",");
+		resultData.append(notAccepted + ",");
+		resultData.append(iterations + ",");
+		resultData.append(getStatistics(loadTimes) + ",");
+		resultData.append(getStatistics(transformTimes) + ",");
+		resultData.append(getStatistics(verifyTimes) + ",");
+		resultData.append((alone ? toMegabytes(heapAfterGC) : "n/a") + ",");
+		resultData.append((alone ? toMegabytes(peakHeap) : "n/a") + ",");
+		resultData.append((transformAllocations[0] < 0 ? "n/a" : toMegabytes((long) median(transformAllocations))) + ",");
+		resultData.append((alone ? toMegabytes(transformPeakHeap) : "n/a") + ",");
+		resultData.append((alone ? String.format(Locale.ROOT, "%.1f", (double) transformGCs / iterations) : "n/a") + ",");
+		resultData.append(alone ? toMillis(transformGCTime * 1e6 / iterations) : "n/a");
 		resultData.append("\n");
 		
 		System.out.println(modelName + " done.");
 		return resultData.toString();
 	}
 	
+	private static String getResultHeader(){
+		StringBuilder header = new StringBuilder();
+		header.append("modelname,");
+		header.append("size of the regular expression,");
+		header.append("time to transform (ms),");
+		header.append("correctly accepted words,");
+		header.append("correctly not accepted words,");
+		header.append("iterations,");
+		for(String phase: new String[]{"load", "transform", "verify"}){
+			header.append(phase + " min (ms),");
+			header.append(phase + " median (ms),");
+			header.append(phase + " p95 (ms),");
+			header.append(phase + " max (ms),");
+		}
+		header.append("heap after gc (MB),");
+		header.append("peak heap (MB),");
+		header.append("transform allocated (MB),");
+		header.append("transform peak heap (MB),");
+		header.append("transform gcs,");
+		header.append("transform gc time (ms)");
+		header.append("\n");
+		return header.toString();
+	}
+	
+	/*
+	 * min, median, p95 (nearest rank) and max of sorted times
+	 */
+	private static String getStatistics(long[] sortedNanos){
+		int p95 = (int) Math.ceil(0.95 * sortedNanos.length) - 1;
+		return toMillis(sortedNanos[0]) + "," + toMillis(median(sortedNanos)) + ","
+				+ toMillis(sortedNanos[p95]) + "," + toMillis(sortedNanos[sortedNanos.length - 1]);
+	}
+	
+	private static double median(long[] sortedNanos){
+		int n = sortedNanos.length;
+		if(n % 2 == 1) return sortedNanos[n / 2];
+		return (sortedNanos[n / 2 - 1] + sortedNanos[n / 2]) / 2.0;
+	}
+	
+	private static String toMillis(double nanos){
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+	
+	private static String toMegabytes(long bytes){
+		return String.format(Locale.ROOT, "%.1f", bytes / (1024.0 * 1024.0));
+	}
+	
+	/*
+	 * collects the garbage, resets the peaks of the heap pools and returns
+	 * the heap in use
+	 */
+	private static long resetPeakHeap(){
+		System.gc();
+		long used = 0;
+		for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() != MemoryType.HEAP) continue;
+			pool.resetPeakUsage();
+			used += pool.getUsage().getUsed();
+		}
+		return used;
+	}
+	
+	/*
+	 * resets the peaks of the heap pools without collecting, after taking
+	 * them into the peaks of the pools so far
+	 */
+	private static void resetPeakHeap(long[] poolPeaks){
+		List<MemoryPoolMXBean> pools = getHeapPools();
+		for(int i=0; i<pools.size() && i<poolPeaks.length; i++){
+			poolPeaks[i] = Math.max(poolPeaks[i], pools.get(i).getPeakUsage().getUsed());
+			pools.get(i).resetPeakUsage();
+		}
+	}
+	
+	private static long getPeakHeap(){
+		long peak = 0;
+		for(MemoryPoolMXBean pool: getHeapPools()){
+			peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+	
+	private static List<MemoryPoolMXBean> getHeapPools(){
+		List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+		for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP) pools.add(pool);
+		}
+		return pools;
+	}
+	
+	/*
+	 * the bytes the current thread has allocated so far, -1 if the jvm
+	 * doesn't tell
+	 */
+	private static long getAllocatedBytes(){
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		if(!allocations.isThreadAllocatedMemorySupported()) return -1;
+		if(!allocations.isThreadAllocatedMemoryEnabled()) allocations.setThreadAllocatedMemoryEnabled(true);
+		return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	private static long getGCCount(){
+		long count = 0;
+		for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()){
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+	
+	private static long getGCTime(){
+		long time = 0;
+		for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()){
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+	
 	/*
 	 * implement this method
 	 */
@@ -119,21 +396,12 @@ public abstract class TestFramework {
 	public abstract String DTMCToSRE(TransitionGraph dtmc);
 	
 	public TransitionGraph getTransitionGraphFromXMI(String modelName){
+		return getTransitionGraphFromXMI(pathToMainModels, modelName);
+	}
+	
+	public TransitionGraph getTransitionGraphFromXMI(String modelDirectory, String modelName){
 		
-		TransitiongraphPackage.eINSTANCE.eClass();
-		
-		Resource.Factory.Registry reg = Resource.Factory.Registry.INSTANCE;
-        Map<String, Object> m = reg.getExtensionToFactoryMap();
-        m.put("xmi", new XMIResourceFactoryImpl());
-        
-        ResourceSet resSet = new ResourceSetImpl();
-        
-        Resource resource = resSet.getResource(URI
-                .createURI("../ExperimentalData/testdata/emf/task-main/" + modelName + ".xmi"), true);
-        
-        TransitionGraph tg = (TransitionGraph) resource.getContents().get(0);
-        
-        return tg;
+		return TransitionGraphResources.load(URI.createURI(modelDirectory + "/" + modelName + ".xmi"));
 	}
 	
 	private int getRegexSize(String regex){
@@ -146,25 +414,47 @@ public abstract class TestFramework {
 		return size;
 	}
 	
-	private String formatRegex(String regex){
-		regex = regex.replace('+', '|');	//java uses '|' as the or symbol
-		regex = regex.replaceAll("\\[.*?\\]", "");	//remove probability
-		regex = regex.replaceAll(":", "");	//':' is concatenation
-		return regex;
+	/*
+	 * the regex compiled once for all words of a model, or null if it is
+	 * malformed; then no word passes
+	 */
+	private SREMatcher compileRegex(String regex){
+		try{
+			return SREMatcher.compile(regex);
+		} catch (IllegalArgumentException e){
+			return null;
+		}
 	}
 	
-	private String testWords(String regex, String acceptedWordsFile, boolean accept){
+	/*
+	 * checks the words of both files and returns passed/total for each. with
+	 * more than one verify thread the words are checked in chunks on a shared
+	 * pool, every chunk with its own matcher
+	 */
+	private String[] testWords(SREMatcher matcher, String acceptedWordsFile, String notAcceptedWordsFile){
+		if(verifyThreads <= 1){
+			return new String[]{testWords(matcher, acceptedWordsFile, true),
+					testWords(matcher, notAcceptedWordsFile, false)};
+		}
+		List<String> accepted = readWords(acceptedWordsFile);
+		List<String> notAccepted = readWords(notAcceptedWordsFile);
+		List<Future<Integer>> acceptedChunks = submitChunks(matcher, accepted, true);
+		List<Future<Integer>> notAcceptedChunks = submitChunks(matcher, notAccepted, false);
+		return new String[]{sum(acceptedChunks) + "/" + accepted.size(),
+				sum(notAcceptedChunks) + "/" + notAccepted.size()};
+	}
+	
+	private String testWords(SREMatcher matcher, String wordsFile, boolean accept){
 		int totalWords = 0;
 		int passed = 0;
 		String word = "";
 		BufferedReader reader;
 		
-		regex = formatRegex(regex);
 		try{
-			reader = new BufferedReader(new FileReader(acceptedWordsFile));
+			reader = new BufferedReader(new FileReader(wordsFile));
 			while((word = reader.readLine()) != null){
 				totalWords++;
-				if(word.matches(regex) == accept) passed++;
+				if(matches(matcher, word) == accept) passed++;
 			}
 			reader.close();
 		} catch (Exception e){
@@ -172,5 +462,79 @@ public abstract class TestFramework {
 		}
 		return passed + "/" + totalWords;
 	}
+	
+	private static boolean matches(SREMatcher matcher, String word){
+		return matcher != null && matcher.matches(word);
+	}
+	
+	private static List<String> readWords(String wordsFile){
+		List<String> words = new ArrayList<String>();
+		String word;
+		try{
+			BufferedReader reader = new BufferedReader(new FileReader(wordsFile));
+			while((word = reader.readLine()) != null){
+				words.add(word);
+			}
+			reader.close();
+		} catch (Exception e){
+			
+		}
+		return words;
+	}
+	
+	private static List<Future<Integer>> submitChunks(final SREMatcher matcher, final List<String> words,
+			final boolean accept){
+		List<Future<Integer>> chunks = new ArrayList<Future<Integer>>();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, (words.size() + verifyThreads - 1) / verifyThreads);
+		for(int start = 0; start < words.size(); start += chunkSize){
+			final List<String> chunk = words.subList(start, Math.min(words.size(), start + chunkSize));
+			chunks.add(getVerifyExecutor().submit(new Callable<Integer>(){
+				public Integer call(){
+					SREMatcher chunkMatcher = matcher != null ? matcher.newMatcher() : null;
+					int passed = 0;
+					for(String word: chunk){
+						if(matches(chunkMatcher, word) == accept) passed++;
+					}
+					return passed;
+				}
+			}));
+		}
+		return chunks;
+	}
+	
+	private static int sum(List<Future<Integer>> chunks){
+		int sum = 0;
+		try{
+			for(Future<Integer> chunk: chunks){
+				sum += chunk.get();
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e){
+			throw new IllegalStateException(e.getCause());
+		}
+		return sum;
+	}
+	
+	private static final int MIN_CHUNK_SIZE = 256;
+	
+	private static ExecutorService verifyExecutor;
+	
+	/*
+	 * one pool for all models, its daemon threads don't keep the vm alive
+	 */
+	private static synchronized ExecutorService getVerifyExecutor(){
+		if(verifyExecutor == null){
+			verifyExecutor = Executors.newFixedThreadPool(verifyThreads, new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread thread = new Thread(r, "verify");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return verifyExecutor;
+	}
 
 }
@@ -1,83 +1,71 @@
 package test;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.WeakHashMap;
 
-import org.eclipse.emf.common.util.EList;
-
-import transitiongraph.State;
-import transitiongraph.Transition;
+import experiment.ConversionCache;
+import experiment.DTMCToSRE;
+import experiment.FSAToRegex;
+import experiment.TransitionGraphToAutomaton;
 import transitiongraph.TransitionGraph;
 
 public class Tester extends TestFramework{
 	
+	/*
+	 * only used if -Dconversion.cache.dir is given, since hits skip the
+	 * conversion that is being tested
+	 */
+	private static final ConversionCache CACHE = ConversionCache.fromSystemProperties();
+	
 	public String FSAToRegex(TransitionGraph fsa){
-		return "";
+		if(CACHE == null) return FSAToRegex.fsaToRegex(TransitionGraphToAutomaton.toFSA(fsa));
+		try{
+			return FSAToRegex.fsaToRegex(TransitionGraphToAutomaton.toFSA(fsa), CACHE);
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
 	}
 	
 	public String DTMCToSRE(TransitionGraph dtmc){
-		return "";
+		if(CACHE == null) return DTMCToSRE.dtmcToSRE(TransitionGraphToAutomaton.toDTMC(dtmc));
+		try{
+			return DTMCToSRE.dtmcToSRE(TransitionGraphToAutomaton.toDTMC(dtmc), CACHE);
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
 	}
 	
 	public String getAcceptedWordFromAutomaton(TransitionGraph tg, int maxLength){
-		String word = "";
-		String longestAcceptingWord = null;
-		EList<State> states = tg.getStates();
-		EList<Transition> transitions;
-		Random rand = new Random();
-		Transition nextTransition;
-		int count = 0;
-		State currentState = null;
-		
-		for(State s: states){
-			if(s.isIsInitial()){
-				currentState = s;
-				break;
-			}
-		}
-		
-		while(count < maxLength){
-			transitions = currentState.getOutgoing();
-			nextTransition = transitions.get(rand.nextInt(transitions.size()));
-			word = word + nextTransition.getLabel();
-			currentState = nextTransition.getTarget();
-			
-			if(currentState.isIsFinal()) longestAcceptingWord = word;
-			
-			count++;
-		}
-		
-		return longestAcceptingWord;
+		return getGenerator(tg).acceptedWord(RANDOM.get(), maxLength);
 	}
 	
 	public String getNotAcceptedWordFromAutomaton(TransitionGraph tg, int maxLength){
-		String word = "";
-		String longestNotAcceptingWord = null;
-		EList<State> states = tg.getStates();
-		EList<Transition> transitions;
-		Random rand = new Random();
-		Transition nextTransition;
-		int count = 0;
-		State currentState = null;
-		
-		for(State s: states){
-			if(s.isIsInitial()){
-				currentState = s;
-				break;
-			}
+		return getGenerator(tg).notAcceptedWord(RANDOM.get(), maxLength);
+	}
+	
+	/*
+	 * the walks of a graph share one generator, which is dropped with the graph
+	 */
+	private static final Map<TransitionGraph, WordCorpusGenerator> GENERATORS =
+			Collections.synchronizedMap(new WeakHashMap<TransitionGraph, WordCorpusGenerator>());
+	
+	private static final ThreadLocal<SplittableRandom> RANDOM = new ThreadLocal<SplittableRandom>(){
+		protected SplittableRandom initialValue(){
+			return new SplittableRandom();
 		}
-		
-		while(count < maxLength){
-			transitions = currentState.getOutgoing();
-			nextTransition = transitions.get(rand.nextInt(transitions.size()));
-			word = word + nextTransition.getLabel();
-			currentState = nextTransition.getTarget();
-			
-			if(!currentState.isIsFinal()) longestNotAcceptingWord = word;
-			
-			count++;
+	};
+	
+	private static WordCorpusGenerator getGenerator(TransitionGraph tg){
+		WordCorpusGenerator generator = GENERATORS.get(tg);
+		if(generator == null){
+			generator = WordCorpusGenerator.fromTransitionGraph(tg);
+			GENERATORS.put(tg, generator);
 		}
-		
-		return longestNotAcceptingWord;
+		return generator;
 	}
 	
 }
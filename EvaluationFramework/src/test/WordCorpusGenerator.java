@@ -0,0 +1,328 @@
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.URI;
+
+import transitiongraph.Transition;
+import transitiongraph.TransitionGraph;
+import transitiongraph.io.TransitionGraphResources;
+
+/*
+ * generates words of a model by random walks, as the word files of the
+ * testdata were made: a walk takes maxLength steps from the initial state,
+ * choosing among the outgoing transitions uniformly, and gives the longest
+ * prefix that ends in a final state as an accepted word, or the longest one
+ * that ends in a non-final state as a not accepted word. a walk stops early
+ * in a state without outgoing transitions.
+ *
+ * a not accepted word may still be accepted along another path of the
+ * model; given a simulator of the model such words are dropped.
+ *
+ * a weighted generator chooses the transitions by their probabilities
+ * instead, in constant time per step from an alias table of every state, so
+ * its words follow the distribution of the chain (see SREWeightCheck).
+ *
+ * the outgoing transitions of every state are kept in flat arrays. corpora are
+ * made in chunks on a pool of threads and written in order while the later
+ * chunks are still generated, with at most two chunks per thread in memory.
+ * every chunk has its own random generator split from the seed in order, so
+ * the same seed gives the same file on any number of threads.
+ *
+ * arguments: <xmi-file> <output-dir> [<count>] [<max-length>] [<seed>]
+ * [<threads>], writes <model>-positive.data and <model>-negative.data.
+ */
+public class WordCorpusGenerator {
+
+	public static final int CHUNK_SIZE = 4096;
+
+	// attempts per word before a chunk gives up, for models with few words
+	private static final int MAX_ATTEMPTS = 100;
+
+	private final int initial;
+	private final boolean[] finals;
+	private final int[] start;
+	private final int[] target;
+	private final String[] label;
+	// the alias tables, null if the choice is uniform
+	private final double[] threshold;
+	private final int[] alias;
+
+	private WordCorpusGenerator(int initial, boolean[] finals, int[] start, int[] target, String[] label,
+			double[] threshold, int[] alias){
+		this.initial = initial;
+		this.finals = finals;
+		this.start = start;
+		this.target = target;
+		this.label = label;
+		this.threshold = threshold;
+		this.alias = alias;
+	}
+
+	public static WordCorpusGenerator fromTransitionGraph(TransitionGraph tg){
+		return fromTransitionGraph(tg, false);
+	}
+
+	/*
+	 * the first initial state of the graph is the initial state, missing
+	 * labels are empty. a weighted generator follows the probabilities of the
+	 * transitions, those of a state need not add up to 1
+	 */
+	public static WordCorpusGenerator fromTransitionGraph(TransitionGraph tg, boolean weighted){
+		EList<transitiongraph.State> states = tg.getStates();
+		EList<Transition> transitions = tg.getTransitions();
+		Map<transitiongraph.State, Integer> index =
+				new IdentityHashMap<transitiongraph.State, Integer>(states.size() * 2);
+		int initial = -1;
+		boolean[] finals = new boolean[states.size()];
+		for(int i=0; i<states.size(); i++){
+			transitiongraph.State s = states.get(i);
+			index.put(s, i);
+			if(s.isIsInitial() && initial < 0) initial = i;
+			finals[i] = s.isIsFinal();
+		}
+
+		int[] from = new int[transitions.size()];
+		int[] start = new int[states.size() + 1];
+		for(int i=0; i<from.length; i++){
+			from[i] = index.get(transitions.get(i).getSource());
+			start[from[i] + 1]++;
+		}
+		for(int s=0; s<states.size(); s++){
+			start[s + 1] += start[s];
+		}
+		int[] target = new int[from.length];
+		String[] label = new String[from.length];
+		double[] probability = new double[from.length];
+		int[] position = Arrays.copyOf(start, states.size());
+		for(int i=0; i<from.length; i++){
+			Transition t = transitions.get(i);
+			int p = position[from[i]]++;
+			target[p] = index.get(t.getTarget());
+			label[p] = t.getLabel() != null ? t.getLabel() : "";
+			probability[p] = t.getProbability();
+		}
+		if(!weighted) return new WordCorpusGenerator(initial, finals, start, target, label, null, null);
+
+		double[] threshold = new double[from.length];
+		int[] alias = new int[from.length];
+		for(int s=0; s<states.size(); s++){
+			aliasTable(probability, start[s], start[s + 1], threshold, alias);
+		}
+		return new WordCorpusGenerator(initial, finals, start, target, label, threshold, alias);
+	}
+
+	/*
+	 * vose's alias method for the transitions from..to-1: the i-th of them is
+	 * chosen with threshold[i] when i is drawn, alias[i] otherwise. states
+	 * whose probabilities add up to 0 choose uniformly
+	 */
+	private static void aliasTable(double[] probability, int from, int to, double[] threshold, int[] alias){
+		int n = to - from;
+		double sum = 0;
+		for(int i=from; i<to; i++){
+			sum += probability[i];
+		}
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallSize = 0, largeSize = 0;
+		for(int i=0; i<n; i++){
+			scaled[i] = sum > 0 ? probability[from + i] * n / sum : 1;
+			if(scaled[i] < 1) small[smallSize++] = i;
+			else large[largeSize++] = i;
+		}
+		while(smallSize > 0 && largeSize > 0){
+			int l = small[--smallSize];
+			int g = large[--largeSize];
+			threshold[from + l] = scaled[l];
+			alias[from + l] = g;
+			scaled[g] += scaled[l] - 1;
+			if(scaled[g] < 1) small[smallSize++] = g;
+			else large[largeSize++] = g;
+		}
+		// what is left is 1 up to rounding
+		while(largeSize > 0){
+			int g = large[--largeSize];
+			threshold[from + g] = 1;
+			alias[from + g] = g;
+		}
+		while(smallSize > 0){
+			int l = small[--smallSize];
+			threshold[from + l] = 1;
+			alias[from + l] = l;
+		}
+	}
+
+	/*
+	 * an accepted word, or null if the walk reached no final state
+	 */
+	public String acceptedWord(SplittableRandom random, int maxLength){
+		StringBuilder word = new StringBuilder();
+		return walk(random, maxLength, true, word) ? word.toString() : null;
+	}
+
+	/*
+	 * a not accepted word, or null if the walk reached no non-final state
+	 */
+	public String notAcceptedWord(SplittableRandom random, int maxLength){
+		StringBuilder word = new StringBuilder();
+		return walk(random, maxLength, false, word) ? word.toString() : null;
+	}
+
+	/*
+	 * walks into the cleared buffer and cuts it to the longest prefix ending
+	 * in a state whose finality is the given one, returns whether there was
+	 * one
+	 */
+	private boolean walk(SplittableRandom random, int maxLength, boolean accepted, StringBuilder word){
+		word.setLength(0);
+		if(initial < 0) return false;
+		int state = initial;
+		int longest = -1;
+		for(int count=0; count<maxLength && start[state] < start[state + 1]; count++){
+			int t = choose(random, state);
+			word.append(label[t]);
+			state = target[t];
+			if(finals[state] == accepted) longest = word.length();
+		}
+		if(longest < 0) return false;
+		word.setLength(longest);
+		return true;
+	}
+
+	/*
+	 * the first length characters of a walk, or all of them if it ends in a
+	 * state without outgoing transitions before. null if it took maxSteps
+	 * steps without getting that far, e.g. in a loop of empty labels
+	 */
+	public String prefix(SplittableRandom random, int length, int maxSteps){
+		StringBuilder word = new StringBuilder(length + 16);
+		if(initial < 0) return "";
+		int state = initial;
+		for(int count=0; word.length() < length && start[state] < start[state + 1]; count++){
+			if(count == maxSteps) return null;
+			int t = choose(random, state);
+			word.append(label[t]);
+			state = target[t];
+		}
+		if(word.length() > length) word.setLength(length);
+		return word.toString();
+	}
+
+	/*
+	 * one of the outgoing transitions of the state, which has some
+	 */
+	private int choose(SplittableRandom random, int state){
+		int t = start[state] + random.nextInt(start[state + 1] - start[state]);
+		if(alias == null || random.nextDouble() < threshold[t]) return t;
+		return start[state] + alias[t];
+	}
+
+	/*
+	 * writes count words of the given kind to the file, one per line, and
+	 * returns how many were written: fewer if the walks rarely find one. not
+	 * accepted words that the simulator accepts are dropped if it is given
+	 */
+	public long writeWords(File file, long count, int maxLength, boolean accepted, long seed, int threads,
+			AutomatonSimulator simulator) throws IOException{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+		try{
+			SplittableRandom seeds = new SplittableRandom(seed);
+			ArrayDeque<Future<StringBuilder>> pending = new ArrayDeque<Future<StringBuilder>>();
+			long written = 0;
+			for(long submitted = 0; submitted < count; submitted += CHUNK_SIZE){
+				int size = (int) Math.min(CHUNK_SIZE, count - submitted);
+				pending.add(executor.submit(chunk(seeds.split(), size, maxLength, accepted, simulator)));
+				if(pending.size() >= 2 * Math.max(1, threads)) written += write(out, pending.poll());
+			}
+			while(!pending.isEmpty()){
+				written += write(out, pending.poll());
+			}
+			return written;
+		} finally {
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+
+	private Callable<StringBuilder> chunk(final SplittableRandom random, final int size, final int maxLength,
+			final boolean accepted, final AutomatonSimulator simulator){
+		return new Callable<StringBuilder>(){
+			public StringBuilder call(){
+				AutomatonSimulator chunkSimulator = simulator != null && !accepted ? simulator.newSimulator() : null;
+				StringBuilder lines = new StringBuilder(size * 16);
+				StringBuilder word = new StringBuilder();
+				int words = 0;
+				for(int attempt=0; words<size && attempt<size*MAX_ATTEMPTS; attempt++){
+					if(!walk(random, maxLength, accepted, word)) continue;
+					if(chunkSimulator != null && chunkSimulator.accepts(word)) continue;
+					lines.append(word).append('\n');
+					words++;
+				}
+				return lines;
+			}
+		};
+	}
+
+	private static long write(Writer out, Future<StringBuilder> chunk) throws IOException{
+		StringBuilder lines;
+		try{
+			lines = chunk.get();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e){
+			throw new IllegalStateException(e.getCause());
+		}
+		long words = 0;
+		for(int i=0; i<lines.length(); i++){
+			if(lines.charAt(i) == '\n') words++;
+		}
+		out.append(lines);
+		return words;
+	}
+
+	public static void main(String[] args) throws IOException{
+		if(args.length < 2){
+			System.out.println("arguments: <xmi-file> <output-dir> [<count>] [<max-length>] [<seed>] [<threads>]");
+			return;
+		}
+		File xmiFile = new File(args[0]);
+		File outputDirectory = new File(args[1]);
+		long count = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+		int maxLength = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+		String modelName = xmiFile.getName().replace("." + TransitionGraphResources.XMI_EXTENSION, "");
+		TransitionGraph tg = TransitionGraphResources.load(URI.createFileURI(xmiFile.getAbsolutePath()));
+		WordCorpusGenerator generator = fromTransitionGraph(tg);
+		AutomatonSimulator simulator = AutomatonSimulator.fromTransitionGraph(tg);
+
+		long start = System.nanoTime();
+		long positive = generator.writeWords(new File(outputDirectory, modelName + "-positive.data"),
+				count, maxLength, true, seed, threads, null);
+		long negative = generator.writeWords(new File(outputDirectory, modelName + "-negative.data"),
+				count, maxLength, false, seed + 1, threads, simulator);
+		System.out.println(modelName + ": " + positive + " accepted and " + negative + " not accepted words in "
+				+ (System.nanoTime() - start) / 1000000 + " ms, seed " + seed);
+	}
+}
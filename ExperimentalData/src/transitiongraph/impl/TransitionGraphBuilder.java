@@ -0,0 +1,132 @@
+/**
+ */
+package transitiongraph.impl;
+
+import java.util.List;
+
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+import transitiongraph.State;
+import transitiongraph.Transition;
+import transitiongraph.TransitionGraph;
+import transitiongraph.TransitiongraphFactory;
+
+/**
+ * <!-- begin-user-doc -->
+ * Builds a {@link TransitionGraph} in bulk, for graphs with many states and
+ * transitions. New states and transitions are collected first and added to
+ * the containment lists of the graph in one step by {@link #build()}, with
+ * notifications of the graph turned off. The source and target of a
+ * transition are set directly and the transition is appended to the
+ * <code>outgoing</code> and <code>incoming</code> lists of its states without
+ * the inverse bookkeeping, uniqueness checks or notifications of
+ * <code>setSource</code> and <code>setTarget</code>.
+ *
+ * The builder may also add to an existing graph; the new transitions may use
+ * states that are already part of it. The result is the same as adding
+ * everything one by one with the generated API.
+ * <!-- end-user-doc -->
+ */
+public class TransitionGraphBuilder {
+
+	private final TransitionGraphImpl graph;
+
+	private final BasicEList<State> newStates;
+
+	private final BasicEList<Transition> newTransitions;
+
+	/**
+	 * Creates a builder for a new, empty graph.
+	 */
+	public TransitionGraphBuilder() {
+		this(TransitiongraphFactory.eINSTANCE.createTransitionGraph(), 16, 16);
+	}
+
+	/**
+	 * Creates a builder for a new graph with about this many states and
+	 * transitions.
+	 */
+	public TransitionGraphBuilder(int expectedStates, int expectedTransitions) {
+		this(TransitiongraphFactory.eINSTANCE.createTransitionGraph(), expectedStates, expectedTransitions);
+	}
+
+	/**
+	 * Creates a builder that adds to an existing graph.
+	 */
+	public TransitionGraphBuilder(TransitionGraph graph) {
+		this(graph, 16, 16);
+	}
+
+	private TransitionGraphBuilder(TransitionGraph graph, int expectedStates, int expectedTransitions) {
+		this.graph = (TransitionGraphImpl) graph;
+		this.newStates = new BasicEList<State>(Math.max(expectedStates, 0));
+		this.newTransitions = new BasicEList<Transition>(Math.max(expectedTransitions, 0));
+	}
+
+	/**
+	 * Makes room for this many more states and transitions, e.g. once the
+	 * header of a file has been read.
+	 */
+	public void ensureCapacity(int moreStates, int moreTransitions) {
+		newStates.grow(newStates.size() + Math.max(moreStates, 0));
+		newTransitions.grow(newTransitions.size() + Math.max(moreTransitions, 0));
+	}
+
+	/**
+	 * Creates a state that is added to the graph by {@link #build()}.
+	 */
+	public State addState(int id, boolean isInitial, boolean isFinal) {
+		StateImpl state = (StateImpl) TransitiongraphFactory.eINSTANCE.createState();
+		state.id = id;
+		state.isInitial = isInitial;
+		state.isFinal = isFinal;
+		newStates.add(state);
+		return state;
+	}
+
+	/**
+	 * Creates a transition that is added to the graph by {@link #build()}. It
+	 * is appended to the outgoing transitions of <code>source</code> and the
+	 * incoming transitions of <code>target</code> right away.
+	 */
+	public Transition addTransition(State source, State target, String label, double probability) {
+		TransitionImpl transition = (TransitionImpl) TransitiongraphFactory.eINSTANCE.createTransition();
+		transition.source = source;
+		transition.target = target;
+		transition.label = label;
+		transition.probability = probability;
+		((InternalEList<Transition>) source.getOutgoing()).basicAdd(transition, null);
+		((InternalEList<Transition>) target.getIncoming()).basicAdd(transition, null);
+		newTransitions.add(transition);
+		return transition;
+	}
+
+	/**
+	 * Adds the new states and transitions to the graph. The builder can be
+	 * used further afterwards.
+	 *
+	 * @return the graph
+	 */
+	public TransitionGraph build() {
+		boolean deliver = graph.eDeliver();
+		graph.eSetDeliver(false);
+		try {
+			addAll(graph.getStates(), newStates);
+			addAll(graph.getTransitions(), newTransitions);
+		} finally {
+			graph.eSetDeliver(deliver);
+		}
+		newStates.clear();
+		newTransitions.clear();
+		return graph;
+	}
+
+	private static <E> void addAll(List<E> containment, BasicEList<E> elements) {
+		if (elements.isEmpty()) {
+			return;
+		}
+		((BasicEList<E>) containment).grow(containment.size() + elements.size());
+		((InternalEList<E>) containment).addAllUnique(elements);
+	}
+}
@@ -0,0 +1,311 @@
+package transitiongraph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads very large tra files with several threads. The file is memory-mapped
+ * and cut into chunks at line ends; the chunks are parsed in parallel into
+ * plain edge arrays, which are then passed to the {@link TraHandler} in file
+ * order from the calling thread. The handler therefore sees exactly the same
+ * calls as with a {@link TraReader} and need not be thread-safe.
+ *
+ * At most two chunks per thread are parsed ahead of the handler, and a chunk
+ * has at most 32 MB, so the edge arrays in flight take a few tens of MB per
+ * thread, however large the file is.
+ */
+public class MappedTraReader {
+
+	private final TraHandler handler;
+	private final boolean uniform;
+	private final int threads;
+
+	/** Edge buffers that have been passed to the handler and can be reused. */
+	private final ConcurrentLinkedQueue<EdgeBuffer> spare = new ConcurrentLinkedQueue<EdgeBuffer>();
+
+	public MappedTraReader(TraHandler handler, boolean uniform) {
+		this(handler, uniform, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param handler receives the content of the files
+	 * @param uniform whether the files are uniform, see {@link TraReader}
+	 * @param threads the number of parsing threads
+	 */
+	public MappedTraReader(TraHandler handler, boolean uniform, int threads) {
+		this.handler = handler;
+		this.uniform = uniform;
+		this.threads = Math.max(1, threads);
+	}
+
+	public void read(File traFile) throws IOException {
+		FileChannel channel = FileChannel.open(traFile.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			long bodyStart = readHeader(channel, size);
+			if (bodyStart < 0 || bodyStart >= size) {
+				return;
+			}
+			readBody(channel, getChunkBounds(channel, bodyStart, size));
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Parses the header lines and returns the position of the first
+	 * transition line, or -1 if the data ends within the header.
+	 */
+	private long readHeader(FileChannel channel, long size) throws IOException {
+		int headerLines = TraReader.headerLines(uniform);
+		long window = Math.min(size, HEADER_WINDOW);
+		while (true) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, window);
+			int[] ends = new int[headerLines];
+			int start = 0;
+			int found = 0;
+			while (found < headerLines) {
+				int end = indexOfLineEnd(buffer, start, (int) window);
+				if (end < 0) {
+					if (window < size) {
+						break; // header longer than the window
+					}
+					end = (int) window;
+				}
+				ends[found++] = end;
+				start = end + 1;
+				if (start > window) {
+					break;
+				}
+			}
+			if (found < headerLines && window < size) {
+				window = Math.min(size, window * 2);
+				continue;
+			}
+
+			TraLineParser parser = new TraLineParser();
+			TraReader reader = new TraReader(handler, uniform);
+			start = 0;
+			for (int line = 0; line < found; line++) {
+				if (TraLineParser.isBlank(buffer, start, ends[line])) {
+					return -1;
+				}
+				reader.handleLine(parser, buffer, start, ends[line], line + 1);
+				start = ends[line] + 1;
+			}
+			return found < headerLines ? -1 : start;
+		}
+	}
+
+	/**
+	 * Cuts the body of the file into chunks that end after a line end.
+	 */
+	private long[] getChunkBounds(FileChannel channel, long bodyStart, long size) throws IOException {
+		long chunkSize = Math.max(MIN_CHUNK_SIZE, (size - bodyStart) / (threads * 4L));
+		chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(bodyStart);
+		ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+		long position = bodyStart + chunkSize;
+		while (position < size) {
+			long lineEnd = -1;
+			long p = position;
+			while (lineEnd < 0 && p < size) {
+				probe.clear();
+				int n = channel.read(probe, p);
+				if (n <= 0) {
+					break;
+				}
+				for (int i = 0; i < n; i++) {
+					if (probe.get(i) == '\n') {
+						lineEnd = p + i;
+						break;
+					}
+				}
+				p += n;
+			}
+			if (lineEnd < 0 || lineEnd + 1 >= size) {
+				break;
+			}
+			bounds.add(lineEnd + 1);
+			position = lineEnd + 1 + chunkSize;
+		}
+		bounds.add(size);
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	private void readBody(final FileChannel channel, final long[] bounds) throws IOException {
+		int chunks = bounds.length - 1;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+		ArrayDeque<Future<EdgeBuffer>> pending = new ArrayDeque<Future<EdgeBuffer>>();
+		int next = 0;
+		int lineNumber = TraReader.headerLines(uniform);
+		try {
+			while (next < chunks && pending.size() < threads * 2) {
+				pending.add(executor.submit(parseChunk(channel, bounds[next], bounds[next + 1])));
+				next++;
+			}
+			while (!pending.isEmpty()) {
+				EdgeBuffer edges = get(pending.poll());
+				if (next < chunks) {
+					pending.add(executor.submit(parseChunk(channel, bounds[next], bounds[next + 1])));
+					next++;
+				}
+				for (int i = 0; i < edges.size; i++) {
+					try {
+						handler.transition(edges.sources[i], edges.targets[i], edges.unscaled[i], edges.scales[i]);
+					} catch (IllegalArgumentException e) {
+						throw new TraParseException(e.getMessage(), lineNumber + i + 1, e);
+					}
+				}
+				if (edges.error != null) {
+					throw new TraParseException(edges.error.getMessage(), lineNumber + edges.size + 1, edges.error);
+				}
+				if (edges.blank) {
+					return;
+				}
+				lineNumber += edges.size;
+				edges.clear();
+				spare.add(edges);
+			}
+		} finally {
+			executor.shutdownNow();
+			spare.clear();
+		}
+	}
+
+	private Callable<EdgeBuffer> parseChunk(final FileChannel channel, final long start, final long end) {
+		return new Callable<EdgeBuffer>() {
+			public EdgeBuffer call() throws IOException {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				int limit = (int) (end - start);
+				EdgeBuffer edges = spare.poll();
+				if (edges == null) {
+					edges = new EdgeBuffer(limit / ESTIMATED_LINE_LENGTH + 16);
+				}
+				TraLineParser parser = new TraLineParser();
+				int lineStart = 0;
+				while (lineStart < limit) {
+					int lineEnd = indexOfLineEnd(buffer, lineStart, limit);
+					if (lineEnd < 0) {
+						lineEnd = limit;
+					}
+					if (TraLineParser.isBlank(buffer, lineStart, lineEnd)) {
+						edges.blank = true;
+						break;
+					}
+					try {
+						parser.parseTransition(buffer, lineStart, lineEnd);
+					} catch (IllegalArgumentException e) {
+						edges.error = e;
+						break;
+					}
+					edges.add(parser.source, parser.target, parser.unscaled, parser.scale);
+					lineStart = lineEnd + 1;
+				}
+				return edges;
+			}
+		};
+	}
+
+	private static EdgeBuffer get(Future<EdgeBuffer> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while reading");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static int indexOfLineEnd(ByteBuffer buffer, int start, int limit) {
+		for (int i = start; i < limit; i++) {
+			if (buffer.get(i) == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The transitions of one chunk, in file order.
+	 */
+	private static class EdgeBuffer {
+		int[] sources, targets, scales;
+		long[] unscaled;
+		int size;
+
+		/** whether the chunk ended with a blank line */
+		boolean blank;
+
+		/** the problem with the line after the last edge, if any */
+		IllegalArgumentException error;
+
+		EdgeBuffer(int capacity) {
+			sources = new int[capacity];
+			targets = new int[capacity];
+			scales = new int[capacity];
+			unscaled = new long[capacity];
+		}
+
+		void add(int source, int target, long probability, int scale) {
+			if (size == sources.length) {
+				int capacity = size * 2;
+				sources = grow(sources, capacity);
+				targets = grow(targets, capacity);
+				scales = grow(scales, capacity);
+				long[] grown = new long[capacity];
+				System.arraycopy(unscaled, 0, grown, 0, size);
+				unscaled = grown;
+			}
+			sources[size] = source;
+			targets[size] = target;
+			unscaled[size] = probability;
+			scales[size] = scale;
+			size++;
+		}
+
+		void clear() {
+			size = 0;
+			blank = false;
+			error = null;
+		}
+
+		private int[] grow(int[] array, int capacity) {
+			int[] grown = new int[capacity];
+			System.arraycopy(array, 0, grown, 0, size);
+			return grown;
+		}
+	}
+
+	private static final long HEADER_WINDOW = 1 << 16;
+	private static final long MIN_CHUNK_SIZE = 4 << 20;
+	/** the edges of a full chunk take about 40 MB */
+	private static final long MAX_CHUNK_SIZE = 32 << 20;
+	private static final int PROBE_SIZE = 1 << 12;
+
+	/** e.g. "1234 5678 0.125\n", used to size the edge arrays */
+	private static final int ESTIMATED_LINE_LENGTH = 16;
+}
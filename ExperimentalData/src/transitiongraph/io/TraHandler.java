@@ -0,0 +1,44 @@
+package transitiongraph.io;
+
+/**
+ * Receives the content of a tra file from a {@link TraReader}, line by line.
+ * A handler may throw an <code>IllegalArgumentException</code> for content
+ * it cannot accept; the reader reports it with the current line number.
+ */
+public interface TraHandler {
+
+	/**
+	 * Called for the first line of a uniform tra file.
+	 * 
+	 * @param numberOfStates the number of states
+	 * @param numberOfTransitions the number of transitions, or -1 if the line
+	 *            does not give it
+	 */
+	void header(int numberOfStates, int numberOfTransitions);
+
+	/**
+	 * Called for the first line of a non-uniform tra file.
+	 * 
+	 * @param ids the IDs of the initial states
+	 */
+	void initialStates(int[] ids);
+
+	/**
+	 * Called for the second line of a non-uniform tra file.
+	 * 
+	 * @param ids the IDs of the final states
+	 */
+	void finalStates(int[] ids);
+
+	/**
+	 * Called for every transition line. The probability is passed as the
+	 * decimal <code>unscaledProbability * 10^-scale</code>, exactly as written
+	 * in the file; see {@link TraReader#toDouble}.
+	 * 
+	 * @param source the ID of the source state
+	 * @param target the ID of the target state
+	 * @param unscaledProbability the digits of the probability
+	 * @param scale the number of digits after the decimal point
+	 */
+	void transition(int source, int target, long unscaledProbability, int scale);
+}
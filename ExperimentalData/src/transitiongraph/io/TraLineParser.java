@@ -0,0 +1,196 @@
+package transitiongraph.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses single lines of a tra file directly from the bytes, without
+ * splitting the line or creating strings. The fields of the last parsed
+ * transition line are left in the public fields of the parser, so one parser
+ * must not be shared between threads.
+ */
+final class TraLineParser {
+
+	/** The fields of the last transition line. */
+	int source, target, scale;
+
+	/** The digits of the probability of the last transition line. */
+	long unscaled;
+
+	/** The position of the next byte to look at. */
+	private int position;
+
+	/**
+	 * @return whether the line contains nothing but blanks
+	 */
+	static boolean isBlank(ByteBuffer buffer, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!isSpace(buffer.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a line <code>source target probability</code>. Anything after the
+	 * probability is ignored.
+	 */
+	void parseTransition(ByteBuffer buffer, int start, int end) {
+		position = start;
+		source = parseInt(buffer, end);
+		target = parseInt(buffer, end);
+		parseDecimal(buffer, end);
+	}
+
+	/**
+	 * Parses a line with at least one and any number of integers.
+	 */
+	int[] parseInts(ByteBuffer buffer, int start, int end) {
+		int[] values = new int[4];
+		int count = 0;
+		position = start;
+		while (true) {
+			skipSpaces(buffer, end);
+			if (position == end) {
+				break;
+			}
+			if (count == values.length) {
+				int[] grown = new int[count * 2];
+				System.arraycopy(values, 0, grown, 0, count);
+				values = grown;
+			}
+			values[count++] = parseInt(buffer, end);
+		}
+		if (count == 0) {
+			throw new IllegalArgumentException("expected a number");
+		}
+		int[] result = new int[count];
+		System.arraycopy(values, 0, result, 0, count);
+		return result;
+	}
+
+	private int parseInt(ByteBuffer buffer, int end) {
+		skipSpaces(buffer, end);
+		boolean negative = false;
+		if (position < end && buffer.get(position) == '-') {
+			negative = true;
+			position++;
+		}
+		long value = 0;
+		int digits = 0;
+		while (position < end) {
+			int digit = buffer.get(position) - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("number too large");
+			}
+			digits++;
+			position++;
+		}
+		if (digits == 0) {
+			throw new IllegalArgumentException("expected a number");
+		}
+		checkSeparator(buffer, end);
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Parses a non-negative decimal such as <code>0.125</code>,
+	 * <code>1</code> or <code>1.5e-3</code> into {@link #unscaled} and
+	 * {@link #scale}. Digits beyond the precision of a long are dropped.
+	 */
+	private void parseDecimal(ByteBuffer buffer, int end) {
+		skipSpaces(buffer, end);
+		long value = 0;
+		int scale = 0;
+		int significant = 0;
+		boolean any = false;
+		while (position < end) {
+			int digit = buffer.get(position) - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			any = true;
+			if (significant < MAX_DIGITS) {
+				value = value * 10 + digit;
+				if (value != 0) {
+					significant++;
+				}
+			} else {
+				scale--;
+			}
+			position++;
+		}
+		if (position < end && buffer.get(position) == '.') {
+			position++;
+			while (position < end) {
+				int digit = buffer.get(position) - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				any = true;
+				if (significant < MAX_DIGITS) {
+					value = value * 10 + digit;
+					if (value != 0) {
+						significant++;
+					}
+					scale++;
+				}
+				position++;
+			}
+		}
+		if (!any) {
+			throw new IllegalArgumentException("expected a probability");
+		}
+		if (position < end && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+			position++;
+			boolean negative = false;
+			if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+				negative = buffer.get(position) == '-';
+				position++;
+			}
+			int exponent = 0;
+			int digits = 0;
+			while (position < end) {
+				int digit = buffer.get(position) - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				if (exponent < 10000) {
+					exponent = exponent * 10 + digit;
+				}
+				digits++;
+				position++;
+			}
+			if (digits == 0) {
+				throw new IllegalArgumentException("malformed exponent");
+			}
+			scale += negative ? exponent : -exponent;
+		}
+		checkSeparator(buffer, end);
+		this.unscaled = value;
+		this.scale = scale;
+	}
+
+	private void checkSeparator(ByteBuffer buffer, int end) {
+		if (position < end && !isSpace(buffer.get(position))) {
+			throw new IllegalArgumentException("unexpected character '" + (char) buffer.get(position) + "'");
+		}
+	}
+
+	private void skipSpaces(ByteBuffer buffer, int end) {
+		while (position < end && isSpace(buffer.get(position))) {
+			position++;
+		}
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	/** The number of significant digits that surely fit into a long. */
+	private static final int MAX_DIGITS = 18;
+}
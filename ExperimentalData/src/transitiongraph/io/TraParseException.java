@@ -0,0 +1,30 @@
+package transitiongraph.io;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a tra file cannot be read. Knows the line that caused it.
+ */
+public class TraParseException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int lineNumber;
+
+	public TraParseException(String message, int lineNumber) {
+		super("line " + lineNumber + ": " + message);
+		this.lineNumber = lineNumber;
+	}
+
+	public TraParseException(String message, int lineNumber, Throwable cause) {
+		this(message, lineNumber);
+		initCause(cause);
+	}
+
+	/**
+	 * @return the line the error occurred in, starting with 1
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+}
@@ -0,0 +1,175 @@
+package transitiongraph.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads tra files and passes their content to a {@link TraHandler}. The file
+ * is scanned once, byte by byte, and numbers are parsed in place, so reading
+ * a line allocates nothing.
+ *
+ * Two layouts are understood. A uniform file starts with a line
+ * <code>numberOfStates numberOfTransitions</code>; a non-uniform one starts
+ * with a line of initial state IDs and a line of final state IDs. All other
+ * lines are <code>source target probability</code>. Reading stops at the end
+ * of the file or at the first blank line.
+ */
+public class TraReader {
+
+	private final TraHandler handler;
+	private final boolean uniform;
+
+	/**
+	 * @param handler receives the content of the files
+	 * @param uniform whether the files are uniform
+	 */
+	public TraReader(TraHandler handler, boolean uniform) {
+		this.handler = handler;
+		this.uniform = uniform;
+	}
+
+	public void read(File traFile) throws IOException {
+		InputStream in = new FileInputStream(traFile);
+		try {
+			read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a file with a {@link MappedTraReader} if it is large and there is
+	 * more than one processor, and with a <code>TraReader</code> otherwise.
+	 */
+	public static void readFile(File traFile, TraHandler handler, boolean uniform) throws IOException {
+		if (traFile.length() >= MAPPED_READ_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1) {
+			new MappedTraReader(handler, uniform).read(traFile);
+		} else {
+			new TraReader(handler, uniform).read(traFile);
+		}
+	}
+
+	public void read(InputStream in) throws IOException {
+		TraLineParser parser = new TraLineParser();
+		byte[] bytes = new byte[BUFFER_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int start = 0; // start of the current line
+		int limit = 0; // end of the valid bytes
+		int scanned = 0; // bytes before this contain no line end
+		int lineNumber = 0;
+		boolean eof = false;
+
+		while (true) {
+			int end = -1;
+			for (int i = scanned; i < limit; i++) {
+				if (bytes[i] == '\n') {
+					end = i;
+					break;
+				}
+			}
+			if (end < 0) {
+				scanned = limit;
+				if (eof) {
+					// last line without line end
+					if (start < limit && !TraLineParser.isBlank(buffer, start, limit)) {
+						handleLine(parser, buffer, start, limit, lineNumber + 1);
+					}
+					return;
+				} else {
+					// move the incomplete line to the front and read on
+					if (start > 0) {
+						System.arraycopy(bytes, start, bytes, 0, limit - start);
+						limit -= start;
+						scanned -= start;
+						start = 0;
+					}
+					if (limit == bytes.length) {
+						byte[] grown = new byte[bytes.length * 2];
+						System.arraycopy(bytes, 0, grown, 0, limit);
+						bytes = grown;
+						buffer = ByteBuffer.wrap(bytes);
+					}
+					int n = in.read(bytes, limit, bytes.length - limit);
+					if (n < 0) {
+						eof = true;
+					} else {
+						limit += n;
+					}
+					continue;
+				}
+			}
+
+			lineNumber++;
+			if (TraLineParser.isBlank(buffer, start, end)) {
+				return;
+			}
+			handleLine(parser, buffer, start, end, lineNumber);
+			start = end + 1;
+			scanned = start;
+		}
+	}
+
+	/**
+	 * Parses one non-blank line and passes it to the handler.
+	 */
+	void handleLine(TraLineParser parser, ByteBuffer buffer, int start, int end, int lineNumber)
+			throws TraParseException {
+		try {
+			if (lineNumber <= headerLines(uniform)) {
+				int[] values = parser.parseInts(buffer, start, end);
+				if (uniform) {
+					handler.header(values[0], values.length > 1 ? values[1] : -1);
+				} else if (lineNumber == 1) {
+					handler.initialStates(values);
+				} else {
+					handler.finalStates(values);
+				}
+			} else {
+				parser.parseTransition(buffer, start, end);
+				handler.transition(parser.source, parser.target, parser.unscaled, parser.scale);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new TraParseException(e.getMessage(), lineNumber, e);
+		}
+	}
+
+	/**
+	 * @return the number of lines before the first transition line
+	 */
+	static int headerLines(boolean uniform) {
+		return uniform ? 1 : 2;
+	}
+
+	/**
+	 * Converts a probability as passed to {@link TraHandler#transition} into
+	 * the closest double. For probabilities with at most 18 significant
+	 * digits this is the same value <code>Double.parseDouble</code> gives for
+	 * the text in the file; the parser drops the digits beyond those.
+	 */
+	public static double toDouble(long unscaled, int scale) {
+		if (scale == 0) {
+			return unscaled;
+		}
+		// both operands are exact, so a single rounding step is correct
+		if (unscaled < (1L << 53) && scale > 0 && scale < POWERS_OF_TEN.length) {
+			return unscaled / POWERS_OF_TEN[scale];
+		}
+		if (unscaled < (1L << 53) && scale < 0 && -scale < POWERS_OF_TEN.length) {
+			return unscaled * POWERS_OF_TEN[-scale];
+		}
+		return BigDecimal.valueOf(unscaled, scale).doubleValue();
+	}
+
+	/** Powers of ten that are exact doubles. */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** Files of this size and larger are read with several threads. */
+	private static final long MAPPED_READ_THRESHOLD = 64L << 20;
+}
@@ -0,0 +1,233 @@
+package transitiongraph.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes tra files line by line through a fixed-size direct buffer, so that
+ * the memory used does not depend on the size of the model. Numbers are
+ * formatted into the buffer digit by digit.
+ *
+ * The writer is a {@link TraHandler}: the calls of a {@link TraReader} copy a
+ * file, and the calls must come in the order in which a reader would make
+ * them, i.e. {@link #header} for a uniform file or {@link #initialStates} and
+ * {@link #finalStates} for a non-uniform one, followed by the transitions.
+ * Probabilities are written in the notation of
+ * <code>BigDecimal.toString</code>, which the reader gives back exactly as
+ * long as they have at most 18 significant digits.
+ *
+ * As a handler the writer reports I/O errors as
+ * <code>UncheckedIOException</code>; {@link #close()} closes the channel.
+ */
+public class TraWriter implements TraHandler, Closeable {
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final WritableByteChannel channel;
+
+	public TraWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	public TraWriter(File traFile) throws IOException {
+		this(new FileOutputStream(traFile).getChannel());
+	}
+
+	public void header(int numberOfStates, int numberOfTransitions) {
+		decimal(numberOfStates);
+		if (numberOfTransitions >= 0) {
+			put((byte) ' ');
+			decimal(numberOfTransitions);
+		}
+		put((byte) '\n');
+	}
+
+	public void initialStates(int[] ids) {
+		ids(ids);
+	}
+
+	public void finalStates(int[] ids) {
+		ids(ids);
+	}
+
+	public void transition(int source, int target, long unscaledProbability, int scale) {
+		if (unscaledProbability < 0) {
+			throw new IllegalArgumentException("negative probability " + BigDecimal.valueOf(unscaledProbability, scale));
+		}
+		decimal(source);
+		put((byte) ' ');
+		decimal(target);
+		put((byte) ' ');
+		probability(unscaledProbability, scale);
+		put((byte) '\n');
+	}
+
+	public void transition(int source, int target, BigDecimal probability) {
+		if (probability.precision() <= MAX_DIGITS) {
+			transition(source, target, probability.unscaledValue().longValue(), probability.scale());
+			return;
+		}
+		if (probability.signum() < 0) {
+			throw new IllegalArgumentException("negative probability " + probability);
+		}
+		decimal(source);
+		put((byte) ' ');
+		decimal(target);
+		put((byte) ' ');
+		ascii(probability.toString());
+		put((byte) '\n');
+	}
+
+	/**
+	 * Writes the probability as <code>Double.toString</code> does, which the
+	 * reader turns back into the same double.
+	 */
+	public void transition(int source, int target, double probability) {
+		if (!(probability >= 0) || Double.isInfinite(probability)) {
+			throw new IllegalArgumentException("invalid probability " + probability);
+		}
+		decimal(source);
+		put((byte) ' ');
+		decimal(target);
+		put((byte) ' ');
+		ascii(Double.toString(probability));
+		put((byte) '\n');
+	}
+
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Flushes the buffer and closes the channel.
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void ids(int[] ids) {
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				put((byte) ' ');
+			}
+			decimal(ids[i]);
+		}
+		put((byte) '\n');
+	}
+
+	/**
+	 * Writes <code>unscaled * 10^-scale</code> as <code>BigDecimal.toString</code>
+	 * would: plain if the scale is not negative and the value is not smaller
+	 * than 10^-6, in scientific notation otherwise.
+	 */
+	private void probability(long unscaled, int scale) {
+		int digits = digits(unscaled);
+		long adjusted = (long) digits - 1 - scale;
+		if (scale == 0) {
+			decimal(unscaled);
+		} else if (scale > 0 && adjusted >= -6) {
+			int integerDigits = digits - scale;
+			if (integerDigits > 0) {
+				long divisor = POWERS_OF_TEN[scale];
+				decimal(unscaled / divisor);
+				put((byte) '.');
+				padded(unscaled % divisor, scale);
+			} else {
+				put((byte) '0');
+				put((byte) '.');
+				padded(unscaled, scale);
+			}
+		} else {
+			long divisor = POWERS_OF_TEN[digits - 1];
+			decimal(unscaled / divisor);
+			if (digits > 1) {
+				put((byte) '.');
+				padded(unscaled % divisor, digits - 1);
+			}
+			put((byte) 'E');
+			put((byte) (adjusted < 0 ? '-' : '+'));
+			decimal(Math.abs(adjusted));
+		}
+	}
+
+	/**
+	 * Writes a non-negative value with leading zeros to the given width.
+	 */
+	private void padded(long value, int width) {
+		ensureRemaining(width);
+		int end = buffer.position() + width;
+		for (int p = end - 1; p >= buffer.position(); p--) {
+			buffer.put(p, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		buffer.position(end);
+	}
+
+	private void decimal(long value) {
+		if (value < 0) {
+			if (value == Long.MIN_VALUE) {
+				ascii(Long.toString(value));
+				return;
+			}
+			put((byte) '-');
+			value = -value;
+		}
+		padded(value, digits(value));
+	}
+
+	private static int digits(long value) {
+		int digits = 1;
+		while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+			digits++;
+		}
+		return digits;
+	}
+
+	private void ascii(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			put((byte) s.charAt(i));
+		}
+	}
+
+	private void put(byte b) {
+		ensureRemaining(1);
+		buffer.put(b);
+	}
+
+	private void ensureRemaining(int n) {
+		if (buffer.remaining() < n) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/** The number of significant digits of a probability that fit into a long. */
+	private static final int MAX_DIGITS = 18;
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private static final int BUFFER_SIZE = 1 << 20;
+}
@@ -0,0 +1,59 @@
+package transitiongraph.io;
+
+/**
+ * The binary trab format for transition graphs, written by
+ * {@link TrabWriter} and read by {@link TrabReader}. It stores the same
+ * content as a tra file in a fraction of the size and can be read without
+ * any text parsing.
+ *
+ * States are numbered 0..n-1 in the file (their index); their IDs are stored
+ * once. Transitions are stored grouped by source state, so the source of a
+ * transition is implied by its row. All multi-byte numbers are big-endian.
+ * <code>varint</code> is an unsigned LEB128 number, <code>zigzag</code> a
+ * signed number mapped to a varint as in protocol buffers.
+ *
+ * <pre>
+ * magic            'T' 'R' 'A' 'B'
+ * version          byte, currently 1
+ * flags            byte, FLOAT_PROBABILITIES | SYMBOLS
+ * n, m             varint number of states, varint number of transitions
+ * ids              n zigzag, each the difference to the previous ID (first to 0)
+ * initial states   varint count, then ascending indices as varint differences
+ * final states     varint count, then ascending indices as varint differences
+ * out-degrees      n varint, the number of transitions of each row
+ * targets          m zigzag, each row starts with the difference to its own
+ *                  index, then the difference to the previous target
+ * probabilities    m doubles, or m floats if FLOAT_PROBABILITIES is set
+ * symbols          only if SYMBOLS is set: varint count, then each symbol as
+ *                  varint length and UTF-8 bytes, then m varint symbol indices
+ * </pre>
+ *
+ * Without symbols the label of a transition is <code>"s" + targetId</code>,
+ * as for transitions read from tra files.
+ */
+public final class TrabFormat {
+
+	private TrabFormat() {
+	}
+
+	/** The file extension, without the dot. */
+	public static final String EXTENSION = "trab";
+
+	static final byte[] MAGIC = { 'T', 'R', 'A', 'B' };
+
+	static final int VERSION = 1;
+
+	/** Probabilities are stored as floats instead of doubles. */
+	static final int FLOAT_PROBABILITIES = 1;
+
+	/** The file contains a symbol table with the transition labels. */
+	static final int SYMBOLS = 2;
+
+	/**
+	 * @return the label a transition to this state has when the file has no
+	 *         symbols
+	 */
+	public static String getDefaultLabel(int targetId) {
+		return "s" + targetId;
+	}
+}
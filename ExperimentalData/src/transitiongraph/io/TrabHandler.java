@@ -0,0 +1,38 @@
+package transitiongraph.io;
+
+/**
+ * Receives the content of a trab file from a {@link TrabReader}. The methods
+ * are called in the order they are declared here, and states are always
+ * identified by their IDs.
+ */
+public interface TrabHandler {
+
+	/**
+	 * Called first, with all states of the graph.
+	 *
+	 * @param ids the IDs of the states, in the order they were written
+	 * @param numberOfTransitions the number of transitions that follow
+	 */
+	void states(int[] ids, int numberOfTransitions);
+
+	/**
+	 * @param ids the IDs of the initial states
+	 */
+	void initialStates(int[] ids);
+
+	/**
+	 * @param ids the IDs of the final states
+	 */
+	void finalStates(int[] ids);
+
+	/**
+	 * Called for every transition, grouped by source state.
+	 *
+	 * @param source the ID of the source state
+	 * @param target the ID of the target state
+	 * @param probability the probability of the transition
+	 * @param label the label of the transition, or <code>null</code> if the
+	 *            file has no symbols; see {@link TrabFormat#getDefaultLabel}
+	 */
+	void transition(int source, int target, double probability, String label);
+}
@@ -0,0 +1,180 @@
+package transitiongraph.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads files in the {@link TrabFormat} and passes their content to a
+ * {@link TrabHandler}. Files are memory-mapped; the structure is decoded
+ * into int arrays first and the probabilities are copied in bulk, so the
+ * handler is called in a tight loop at the end.
+ */
+public class TrabReader {
+
+	private final TrabHandler handler;
+
+	public TrabReader(TrabHandler handler) {
+		this.handler = handler;
+	}
+
+	public void read(File trabFile) throws IOException {
+		FileChannel channel = FileChannel.open(trabFile.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(trabFile + " is too large");
+			}
+			read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		} finally {
+			channel.close();
+		}
+	}
+
+	public void read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 16];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, n);
+		}
+		read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	public void read(ByteBuffer buffer) throws IOException {
+		try {
+			decode(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("the trab file is truncated", e);
+		}
+	}
+
+	private void decode(ByteBuffer buffer) throws IOException {
+		for (int i = 0; i < TrabFormat.MAGIC.length; i++) {
+			if (buffer.get() != TrabFormat.MAGIC[i]) {
+				throw new IOException("not a trab file");
+			}
+		}
+		int version = buffer.get();
+		if (version != TrabFormat.VERSION) {
+			throw new IOException("unsupported trab version " + version);
+		}
+		int flags = buffer.get();
+		int n = varint(buffer);
+		int m = varint(buffer);
+		if (n < 0 || m < 0) {
+			throw new IOException("corrupt trab file");
+		}
+
+		int[] ids = new int[n];
+		int previous = 0;
+		for (int i = 0; i < n; i++) {
+			previous += zigzag(buffer);
+			ids[i] = previous;
+		}
+		int[] initialIds = readIds(buffer, ids);
+		int[] finalIds = readIds(buffer, ids);
+
+		int[] sources = new int[m];
+		int j = 0;
+		for (int i = 0; i < n; i++) {
+			int degree = varint(buffer);
+			if (degree < 0 || degree > m - j) {
+				throw new IOException("corrupt trab file");
+			}
+			for (int k = 0; k < degree; k++) {
+				sources[j++] = i;
+			}
+		}
+		if (j != m) {
+			throw new IOException("corrupt trab file");
+		}
+		int[] targets = new int[m];
+		for (j = 0; j < m; j++) {
+			int target = (j == 0 || sources[j] != sources[j - 1] ? sources[j] : targets[j - 1]) + zigzag(buffer);
+			if (target < 0 || target >= n) {
+				throw new IOException("corrupt trab file");
+			}
+			targets[j] = target;
+		}
+
+		double[] probabilities = new double[m];
+		if ((flags & TrabFormat.FLOAT_PROBABILITIES) != 0) {
+			float[] floats = new float[m];
+			buffer.asFloatBuffer().get(floats);
+			buffer.position(buffer.position() + 4 * m);
+			for (j = 0; j < m; j++) {
+				probabilities[j] = floats[j];
+			}
+		} else {
+			buffer.asDoubleBuffer().get(probabilities);
+			buffer.position(buffer.position() + 8 * m);
+		}
+
+		String[] labels = null;
+		if ((flags & TrabFormat.SYMBOLS) != 0) {
+			String[] symbols = new String[varint(buffer)];
+			for (int i = 0; i < symbols.length; i++) {
+				byte[] utf8 = new byte[varint(buffer)];
+				buffer.get(utf8);
+				symbols[i] = new String(utf8, StandardCharsets.UTF_8);
+			}
+			labels = new String[m];
+			for (j = 0; j < m; j++) {
+				int symbol = varint(buffer);
+				if (symbol < 0 || symbol >= symbols.length) {
+					throw new IOException("corrupt trab file");
+				}
+				labels[j] = symbols[symbol];
+			}
+		}
+
+		handler.states(ids, m);
+		handler.initialStates(initialIds);
+		handler.finalStates(finalIds);
+		for (j = 0; j < m; j++) {
+			handler.transition(ids[sources[j]], ids[targets[j]], probabilities[j], labels == null ? null
+					: labels[j]);
+		}
+	}
+
+	private static int[] readIds(ByteBuffer buffer, int[] ids) throws IOException {
+		int count = varint(buffer);
+		if (count < 0 || count > ids.length) {
+			throw new IOException("corrupt trab file");
+		}
+		int[] result = new int[count];
+		int index = 0;
+		for (int i = 0; i < count; i++) {
+			index += varint(buffer);
+			if (index < 0 || index >= ids.length) {
+				throw new IOException("corrupt trab file");
+			}
+			result[i] = ids[index];
+		}
+		return result;
+	}
+
+	private static int varint(ByteBuffer buffer) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("corrupt trab file");
+	}
+
+	private static int zigzag(ByteBuffer buffer) throws IOException {
+		int value = varint(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,308 @@
+package transitiongraph.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects the states and transitions of a graph and writes them in the
+ * {@link TrabFormat}. States must be added before the transitions that use
+ * them. Transitions keep their order within each source state.
+ *
+ * The symbol table is only written if some label differs from the
+ * {@link TrabFormat#getDefaultLabel default label}.
+ */
+public class TrabWriter {
+
+	private final boolean floatProbabilities;
+
+	private final Map<Integer, Integer> indexById = new HashMap<Integer, Integer>();
+	private int[] ids = new int[16];
+	private boolean[] initial = new boolean[16];
+	private boolean[] isFinal = new boolean[16];
+	private int numberOfStates;
+
+	private int[] sources = new int[16];
+	private int[] targets = new int[16];
+	private double[] probabilities = new double[16];
+	private String[] labels = new String[16];
+	private int numberOfTransitions;
+	private boolean defaultLabels = true;
+
+	/**
+	 * @param floatProbabilities whether to store the probabilities as floats,
+	 *            which halves their size but loses precision
+	 */
+	public TrabWriter(boolean floatProbabilities) {
+		this.floatProbabilities = floatProbabilities;
+	}
+
+	public void addState(int id, boolean initialState, boolean finalState) {
+		if (indexById.put(id, numberOfStates) != null) {
+			throw new IllegalArgumentException("state " + id + " was added twice");
+		}
+		if (numberOfStates == ids.length) {
+			int length = numberOfStates * 2;
+			ids = grow(ids, length);
+			boolean[] grown = new boolean[length];
+			System.arraycopy(initial, 0, grown, 0, numberOfStates);
+			initial = grown;
+			grown = new boolean[length];
+			System.arraycopy(isFinal, 0, grown, 0, numberOfStates);
+			isFinal = grown;
+		}
+		ids[numberOfStates] = id;
+		initial[numberOfStates] = initialState;
+		isFinal[numberOfStates] = finalState;
+		numberOfStates++;
+	}
+
+	/**
+	 * @param label the label, or <code>null</code> for the default label
+	 */
+	public void addTransition(int sourceId, int targetId, double probability, String label) {
+		if (numberOfTransitions == sources.length) {
+			int length = numberOfTransitions * 2;
+			sources = grow(sources, length);
+			targets = grow(targets, length);
+			double[] grownProbabilities = new double[length];
+			System.arraycopy(probabilities, 0, grownProbabilities, 0, numberOfTransitions);
+			probabilities = grownProbabilities;
+			String[] grownLabels = new String[length];
+			System.arraycopy(labels, 0, grownLabels, 0, numberOfTransitions);
+			labels = grownLabels;
+		}
+		sources[numberOfTransitions] = getIndex(sourceId);
+		targets[numberOfTransitions] = getIndex(targetId);
+		probabilities[numberOfTransitions] = probability;
+		labels[numberOfTransitions] = label;
+		if (label != null && !label.equals(TrabFormat.getDefaultLabel(targetId))) {
+			defaultLabels = false;
+		}
+		numberOfTransitions++;
+	}
+
+	public void write(File trabFile) throws IOException {
+		OutputStream out = new FileOutputStream(trabFile);
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public void write(OutputStream out) throws IOException {
+		int n = numberOfStates;
+		int m = numberOfTransitions;
+
+		// group the transitions by source, keeping their order
+		int[] rowStart = new int[n + 1];
+		for (int i = 0; i < m; i++) {
+			rowStart[sources[i] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			rowStart[i + 1] += rowStart[i];
+		}
+		int[] order = new int[m];
+		int[] next = new int[n];
+		System.arraycopy(rowStart, 0, next, 0, n);
+		for (int i = 0; i < m; i++) {
+			order[next[sources[i]]++] = i;
+		}
+
+		// the body is streamed, only the symbol table is built in memory
+		Output o = new Output(BUFFER_SIZE, out);
+		o.bytes(TrabFormat.MAGIC);
+		o.put(TrabFormat.VERSION);
+		o.put((floatProbabilities ? TrabFormat.FLOAT_PROBABILITIES : 0) | (defaultLabels ? 0 : TrabFormat.SYMBOLS));
+		o.varint(n);
+		o.varint(m);
+
+		int previous = 0;
+		for (int i = 0; i < n; i++) {
+			o.zigzag(ids[i] - previous);
+			previous = ids[i];
+		}
+		writeIndices(o, initial);
+		writeIndices(o, isFinal);
+
+		for (int i = 0; i < n; i++) {
+			o.varint(rowStart[i + 1] - rowStart[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			previous = i;
+			for (int j = rowStart[i]; j < rowStart[i + 1]; j++) {
+				int target = targets[order[j]];
+				o.zigzag(target - previous);
+				previous = target;
+			}
+		}
+		for (int j = 0; j < m; j++) {
+			if (floatProbabilities) {
+				o.int32(Float.floatToIntBits((float) probabilities[order[j]]));
+			} else {
+				o.int64(Double.doubleToLongBits(probabilities[order[j]]));
+			}
+		}
+
+		if (!defaultLabels) {
+			Map<String, Integer> symbols = new HashMap<String, Integer>();
+			int[] symbolIndices = new int[m];
+			Output table = new Output(64);
+			for (int j = 0; j < m; j++) {
+				String label = labels[order[j]];
+				if (label == null) {
+					label = TrabFormat.getDefaultLabel(ids[targets[order[j]]]);
+				}
+				Integer symbol = symbols.get(label);
+				if (symbol == null) {
+					symbol = symbols.size();
+					symbols.put(label, symbol);
+					byte[] utf8 = label.getBytes(StandardCharsets.UTF_8);
+					table.varint(utf8.length);
+					table.bytes(utf8);
+				}
+				symbolIndices[j] = symbol;
+			}
+			o.varint(symbols.size());
+			o.bytes(table.buffer, table.size);
+			for (int j = 0; j < m; j++) {
+				o.varint(symbolIndices[j]);
+			}
+		}
+
+		o.flush();
+		out.flush();
+	}
+
+	private void writeIndices(Output o, boolean[] flags) throws IOException {
+		int count = 0;
+		for (int i = 0; i < numberOfStates; i++) {
+			if (flags[i]) {
+				count++;
+			}
+		}
+		o.varint(count);
+		int previous = 0;
+		for (int i = 0; i < numberOfStates; i++) {
+			if (flags[i]) {
+				o.varint(i - previous);
+				previous = i;
+			}
+		}
+	}
+
+	private int getIndex(int id) {
+		Integer index = indexById.get(id);
+		if (index == null) {
+			throw new IllegalArgumentException("state " + id + " has not been added");
+		}
+		return index;
+	}
+
+	private int[] grow(int[] array, int length) {
+		int[] grown = new int[length];
+		System.arraycopy(array, 0, grown, 0, Math.min(array.length, length));
+		return grown;
+	}
+
+	/**
+	 * A byte buffer with the encodings of the format. With a stream it is
+	 * written to the stream whenever it is full, otherwise it grows.
+	 */
+	private static class Output {
+		final OutputStream out;
+		byte[] buffer;
+		int size;
+
+		Output(int capacity) {
+			this(capacity, null);
+		}
+
+		Output(int capacity, OutputStream out) {
+			this.out = out;
+			buffer = new byte[capacity];
+		}
+
+		void put(int b) throws IOException {
+			ensure(1);
+			buffer[size++] = (byte) b;
+		}
+
+		void bytes(byte[] bytes) throws IOException {
+			bytes(bytes, bytes.length);
+		}
+
+		void bytes(byte[] bytes, int length) throws IOException {
+			if (out != null && length > buffer.length) {
+				flush();
+				out.write(bytes, 0, length);
+				return;
+			}
+			ensure(length);
+			System.arraycopy(bytes, 0, buffer, size, length);
+			size += length;
+		}
+
+		void varint(int value) throws IOException {
+			ensure(5);
+			while ((value & ~0x7F) != 0) {
+				buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[size++] = (byte) value;
+		}
+
+		void zigzag(int value) throws IOException {
+			varint((value << 1) ^ (value >> 31));
+		}
+
+		void int32(int value) throws IOException {
+			ensure(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				buffer[size++] = (byte) (value >>> shift);
+			}
+		}
+
+		void int64(long value) throws IOException {
+			ensure(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				buffer[size++] = (byte) (value >>> shift);
+			}
+		}
+
+		/**
+		 * Writes what is buffered to the stream.
+		 */
+		void flush() throws IOException {
+			out.write(buffer, 0, size);
+			size = 0;
+		}
+
+		private void ensure(int more) throws IOException {
+			if (size + more <= buffer.length) {
+				return;
+			}
+			if (out != null) {
+				flush();
+				return;
+			}
+			long capacity = Math.max(buffer.length * 2L, (long) size + more);
+			if ((long) size + more > MAX_ARRAY_SIZE) {
+				throw new OutOfMemoryError("more than " + MAX_ARRAY_SIZE + " bytes");
+			}
+			byte[] grown = new byte[(int) Math.min(capacity, MAX_ARRAY_SIZE)];
+			System.arraycopy(buffer, 0, grown, 0, size);
+			buffer = grown;
+		}
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** the largest array most JVMs can allocate */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+}
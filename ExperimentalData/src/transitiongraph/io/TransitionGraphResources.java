@@ -0,0 +1,130 @@
+package transitiongraph.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceFactoryImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
+
+import transitiongraph.TransitionGraph;
+import transitiongraph.TransitiongraphPackage;
+
+/**
+ * Loads and saves {@link TransitionGraph}s as EMF resources. The xmi and the
+ * binary <code>tgb</code> resource factories are registered once, when this
+ * class is first used; all methods may be called from several threads.
+ *
+ * XMI files are read with a shared parser pool and a shared cache from XML
+ * names to features, and the references between transitions and states
+ * (<code>//@transitions.N</code>) are resolved in one pass at the end of the
+ * document. Saving reuses the lookup tables of the serializer. None of the
+ * options change the written XMI.
+ *
+ * The binary format is EMF's {@link BinaryResourceImpl}; it stores the same
+ * content with exact doubles and loads much faster than XMI.
+ */
+public final class TransitionGraphResources {
+
+	private TransitionGraphResources() {
+	}
+
+	/** The extension of XMI files. */
+	public static final String XMI_EXTENSION = "xmi";
+
+	/** The extension of files in EMF's binary resource format. */
+	public static final String BINARY_EXTENSION = "tgb";
+
+	private static final Integer BUFFER_CAPACITY = 1 << 16;
+
+	private static final XMLParserPool PARSER_POOL = new XMLParserPoolImpl(true);
+
+	private static final Map<String, EStructuralFeature> NAME_TO_FEATURE = Collections
+			.synchronizedMap(new HashMap<String, EStructuralFeature>());
+
+	private static final Map<Object, Object> LOAD_OPTIONS;
+
+	static {
+		TransitiongraphPackage.eINSTANCE.eClass();
+
+		Map<String, Object> m = Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap();
+		synchronized (m) {
+			if (!m.containsKey(XMI_EXTENSION)) {
+				m.put(XMI_EXTENSION, new XMIResourceFactoryImpl());
+			}
+			if (!m.containsKey(BINARY_EXTENSION)) {
+				m.put(BINARY_EXTENSION, new BinaryResourceFactory());
+			}
+		}
+
+		Map<Object, Object> options = new HashMap<Object, Object>();
+		options.put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+		options.put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, NAME_TO_FEATURE);
+		options.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+		options.put(XMLResource.OPTION_DEFER_ATTACHMENT, Boolean.TRUE);
+		options.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+		options.put(XMLResource.OPTION_CONFIGURATION_CACHE, Boolean.TRUE);
+		options.put(BinaryResourceImpl.OPTION_BUFFER_CAPACITY, BUFFER_CAPACITY);
+		LOAD_OPTIONS = Collections.unmodifiableMap(options);
+	}
+
+	/**
+	 * Creates a resource set that loads with the tuned options and caches the
+	 * resources by URI. A resource set must only be used by one thread at a
+	 * time.
+	 */
+	public static ResourceSet createResourceSet() {
+		ResourceSetImpl resourceSet = new ResourceSetImpl();
+		resourceSet.getLoadOptions().putAll(LOAD_OPTIONS);
+		resourceSet.setURIResourceMap(new HashMap<URI, Resource>());
+		return resourceSet;
+	}
+
+	/**
+	 * @return new options for one call of <code>Resource.save</code>; they
+	 *         hold state and must not be shared between threads
+	 */
+	public static Map<Object, Object> getSaveOptions() {
+		Map<Object, Object> options = new HashMap<Object, Object>();
+		options.put(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE, new ArrayList<Object>());
+		options.put(XMLResource.OPTION_CONFIGURATION_CACHE, Boolean.TRUE);
+		options.put(BinaryResourceImpl.OPTION_STYLE_BINARY_FLOATING_POINT, Boolean.TRUE);
+		options.put(BinaryResourceImpl.OPTION_BUFFER_CAPACITY, BUFFER_CAPACITY);
+		return options;
+	}
+
+	/**
+	 * Loads the graph of an xmi or tgb file into a new resource set.
+	 */
+	public static TransitionGraph load(URI uri) {
+		Resource resource = createResourceSet().getResource(uri, true);
+		return (TransitionGraph) resource.getContents().get(0);
+	}
+
+	/**
+	 * Saves the graph into a new resource; the format is chosen by the
+	 * extension of the URI.
+	 */
+	public static void save(TransitionGraph tg, URI uri) throws IOException {
+		Resource resource = createResourceSet().createResource(uri);
+		resource.getContents().add(tg);
+		resource.save(getSaveOptions());
+	}
+
+	private static class BinaryResourceFactory extends ResourceFactoryImpl {
+		public Resource createResource(URI uri) {
+			return new BinaryResourceImpl(uri);
+		}
+	}
+}
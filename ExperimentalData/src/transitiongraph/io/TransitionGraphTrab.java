@@ -0,0 +1,81 @@
+package transitiongraph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import transitiongraph.State;
+import transitiongraph.Transition;
+import transitiongraph.TransitionGraph;
+import transitiongraph.impl.TransitionGraphBuilder;
+
+/**
+ * Stores {@link TransitionGraph}s in the {@link TrabFormat}.
+ */
+public final class TransitionGraphTrab {
+
+	private TransitionGraphTrab() {
+	}
+
+	/**
+	 * Writes the graph with double probabilities.
+	 */
+	public static void write(TransitionGraph tg, File trabFile) throws IOException {
+		write(tg, trabFile, false);
+	}
+
+	public static void write(TransitionGraph tg, File trabFile, boolean floatProbabilities) throws IOException {
+		TrabWriter writer = new TrabWriter(floatProbabilities);
+		for (State s : tg.getStates()) {
+			writer.addState(s.getId(), s.isIsInitial(), s.isIsFinal());
+		}
+		for (Transition t : tg.getTransitions()) {
+			writer.addTransition(t.getSource().getId(), t.getTarget().getId(), t.getProbability(), t.getLabel());
+		}
+		writer.write(trabFile);
+	}
+
+	/**
+	 * Reads a graph. Its transitions are ordered by source state.
+	 */
+	public static TransitionGraph read(File trabFile) throws IOException {
+		Handler handler = new Handler();
+		new TrabReader(handler).read(trabFile);
+		return handler.builder.build();
+	}
+
+	/**
+	 * Builds the graph with a {@link TransitionGraphBuilder}, presized from
+	 * the header.
+	 */
+	private static class Handler implements TrabHandler {
+
+		private final TransitionGraphBuilder builder = new TransitionGraphBuilder();
+		private final Map<Integer, State> id2state = new HashMap<Integer, State>();
+
+		public void states(int[] ids, int numberOfTransitions) {
+			builder.ensureCapacity(ids.length, numberOfTransitions);
+			for (int id : ids) {
+				id2state.put(id, builder.addState(id, false, false));
+			}
+		}
+
+		public void initialStates(int[] ids) {
+			for (int id : ids) {
+				id2state.get(id).setIsInitial(true);
+			}
+		}
+
+		public void finalStates(int[] ids) {
+			for (int id : ids) {
+				id2state.get(id).setIsFinal(true);
+			}
+		}
+
+		public void transition(int source, int target, double probability, String label) {
+			builder.addTransition(id2state.get(source), id2state.get(target),
+					label != null ? label : TrabFormat.getDefaultLabel(target), probability);
+		}
+	}
+}
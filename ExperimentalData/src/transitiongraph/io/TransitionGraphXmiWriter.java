@@ -0,0 +1,277 @@
+package transitiongraph.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import transitiongraph.State;
+import transitiongraph.Transition;
+import transitiongraph.TransitionGraph;
+import transitiongraph.TransitiongraphPackage;
+
+/**
+ * Writes a {@link TransitionGraph} as XMI, byte for byte as
+ * <code>Resource.save</code> does with the default options, but without
+ * building the document in memory first. States and transitions are written
+ * in one pass through a fixed-size buffer; references are formed from the
+ * positions of the states and transitions in the graph, which are looked up
+ * in two identity maps from objects to ints.
+ *
+ * The files can be loaded with the XMI resource factory as usual.
+ */
+public class TransitionGraphXmiWriter {
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final byte[] lineSeparator = System.getProperty("line.separator").getBytes();
+	private final WritableByteChannel channel;
+
+	public TransitionGraphXmiWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	public static void write(TransitionGraph tg, File xmiFile) throws IOException {
+		FileOutputStream out = new FileOutputStream(xmiFile);
+		try {
+			FileChannel channel = out.getChannel();
+			new TransitionGraphXmiWriter(channel).write(tg);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the graph and flushes the buffer. The channel is not closed.
+	 */
+	public void write(TransitionGraph tg) throws IOException {
+		List<State> states = tg.getStates();
+		List<Transition> transitions = tg.getTransitions();
+		IdentityIndex stateIndex = new IdentityIndex(states);
+		IdentityIndex transitionIndex = new IdentityIndex(transitions);
+
+		ascii("<?xml version=\"1.0\" encoding=\"ASCII\"?>");
+		newLine();
+		ascii("<" + TransitiongraphPackage.eNS_PREFIX + ":TransitionGraph xmi:version=\"2.0\""
+				+ " xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:" + TransitiongraphPackage.eNS_PREFIX + "=\""
+				+ TransitiongraphPackage.eNS_URI + "\"");
+		if (states.isEmpty() && transitions.isEmpty()) {
+			ascii("/>");
+			newLine();
+			flush();
+			return;
+		}
+		ascii(">");
+		newLine();
+
+		for (int i = 0; i < states.size(); i++) {
+			State s = states.get(i);
+			ascii("  <states");
+			if (s.getId() != 0) {
+				ascii(" id=\"");
+				decimal(s.getId());
+				ascii("\"");
+			}
+			references(" outgoing=\"", "//@transitions.", s.getOutgoing(), transitionIndex);
+			references(" incoming=\"", "//@transitions.", s.getIncoming(), transitionIndex);
+			if (s.isIsFinal()) {
+				ascii(" isFinal=\"true\"");
+			}
+			if (s.isIsInitial()) {
+				ascii(" isInitial=\"true\"");
+			}
+			ascii("/>");
+			newLine();
+		}
+
+		for (int i = 0; i < transitions.size(); i++) {
+			Transition t = transitions.get(i);
+			ascii("  <transitions");
+			if (t.getLabel() != null) {
+				ascii(" label=\"");
+				escaped(t.getLabel());
+				ascii("\"");
+			}
+			if (t.getSource() != null) {
+				ascii(" source=\"//@states.");
+				decimal(stateIndex.get(t.getSource()));
+				ascii("\"");
+			}
+			if (t.getTarget() != null) {
+				ascii(" target=\"//@states.");
+				decimal(stateIndex.get(t.getTarget()));
+				ascii("\"");
+			}
+			if (t.getProbability() != 0.0) {
+				ascii(" probability=\"");
+				ascii(Double.toString(t.getProbability()));
+				ascii("\"");
+			}
+			ascii("/>");
+			newLine();
+		}
+
+		ascii("</" + TransitiongraphPackage.eNS_PREFIX + ":TransitionGraph>");
+		newLine();
+		flush();
+	}
+
+	private void references(String attribute, String prefix, List<Transition> targets, IdentityIndex index)
+			throws IOException {
+		if (targets.isEmpty()) {
+			return;
+		}
+		ascii(attribute);
+		for (int i = 0; i < targets.size(); i++) {
+			if (i > 0) {
+				put((byte) ' ');
+			}
+			ascii(prefix);
+			decimal(index.get(targets.get(i)));
+		}
+		ascii("\"");
+	}
+
+	/**
+	 * Writes an attribute value with the escapes of EMF: markup characters
+	 * and line breaks as entities, everything outside of ASCII as a character
+	 * reference. Like EMF, characters that XML does not allow
+	 * are rejected.
+	 */
+	private void escaped(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			int c = value.codePointAt(i);
+			if (Character.isSupplementaryCodePoint(c)) {
+				i++;
+			}
+			switch (c) {
+			case '&':
+				ascii("&amp;");
+				break;
+			case '<':
+				ascii("&lt;");
+				break;
+			case '"':
+				ascii("&quot;");
+				break;
+			case '\n':
+				ascii("&#xA;");
+				break;
+			case '\r':
+				ascii("&#xD;");
+				break;
+			case '\t':
+				ascii("&#x9;");
+				break;
+			default:
+				if (c < 0x20 || c == 0xFFFE || c == 0xFFFF || (c >= 0xD800 && c <= 0xDFFF)) {
+					throw new IllegalArgumentException("invalid XML character 0x" + Integer.toHexString(c));
+				}
+				if (c > 0x7F) {
+					ascii("&#x" + Integer.toHexString(c) + ";");
+				} else {
+					put((byte) c);
+				}
+			}
+		}
+	}
+
+	private void ascii(String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			put((byte) s.charAt(i));
+		}
+	}
+
+	private void decimal(int value) throws IOException {
+		if (value < 0) {
+			if (value == Integer.MIN_VALUE) {
+				ascii(Integer.toString(value));
+				return;
+			}
+			put((byte) '-');
+			value = -value;
+		}
+		if (buffer.remaining() < 10) {
+			flush();
+		}
+		int digits = 1;
+		for (int v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		int end = buffer.position() + digits;
+		for (int p = end - 1; p >= buffer.position(); p--) {
+			buffer.put(p, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		buffer.position(end);
+	}
+
+	private void newLine() throws IOException {
+		for (int i = 0; i < lineSeparator.length; i++) {
+			put(lineSeparator[i]);
+		}
+	}
+
+	private void put(byte b) throws IOException {
+		if (!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.put(b);
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Maps the elements of a list to their positions, by identity, in two
+	 * flat arrays with linear probing.
+	 */
+	private static class IdentityIndex {
+		private final Object[] keys;
+		private final int[] values;
+		private final int mask;
+
+		IdentityIndex(List<?> elements) {
+			int capacity = Integer.highestOneBit(Math.max(elements.size(), 1) * 2 - 1) << 1;
+			keys = new Object[capacity];
+			values = new int[capacity];
+			mask = capacity - 1;
+			for (int i = 0; i < elements.size(); i++) {
+				Object key = elements.get(i);
+				int slot = hash(key) & mask;
+				while (keys[slot] != null && keys[slot] != key) {
+					slot = (slot + 1) & mask;
+				}
+				if (keys[slot] == null) {
+					keys[slot] = key;
+					values[slot] = i;
+				}
+			}
+		}
+
+		int get(Object key) {
+			int slot = hash(key) & mask;
+			while (keys[slot] != null) {
+				if (keys[slot] == key) {
+					return values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			throw new IllegalArgumentException(key + " is not part of the graph");
+		}
+
+		private static int hash(Object key) {
+			int h = System.identityHashCode(key);
+			return h ^ (h >>> 16);
+		}
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+}
@@ -9,7 +9,6 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -30,6 +29,99 @@ public class ProbAutomaton{
 		initialState = null;
 	}
 	
+	/**
+	 * Creates an instance of <CODE>Automaton</CODE> with no states and no
+	 * transitions, but with room for the given number of them. Loading a large
+	 * model then neither rehashes the state and transition sets nor grows the
+	 * adjacency rows over and over.
+	 * 
+	 * @param expectedStates
+	 *            the number of states that will be added
+	 * @param expectedTransitions
+	 *            the number of transitions that will be added
+	 */
+	public ProbAutomaton(int expectedStates, int expectedTransitions) {
+		states = new HashSet(getHashCapacity(expectedStates));
+		transitions = new HashSet(getHashCapacity(expectedTransitions));
+		finalStates = new HashSet();
+		initialState = null;
+		transitionFromStateMap = new HashMap(getHashCapacity(expectedStates));
+		transitionToStateMap = new HashMap(getHashCapacity(expectedStates));
+		if (expectedStates > 0)
+			rowCapacity = Math.max(1, (int) Math.min(Integer.MAX_VALUE,
+					((long) expectedTransitions + expectedStates - 1) / expectedStates));
+	}
+
+	/**
+	 * Returns the initial capacity of a hash table that holds
+	 * <CODE>size</CODE> entries without rehashing.
+	 */
+	private static int getHashCapacity(int size) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(16, (long) size * 4 / 3 + 1));
+	}
+	
+	/**
+	 * Returns a copy of this automaton that shares its states, transitions
+	 * and adjacency rows with this automaton. Nothing is copied up front
+	 * except the two row maps; a row is copied the first time either
+	 * automaton writes to it, so several conversions can start from the same
+	 * loaded model without re-parsing it or paying for a deep copy.
+	 * 
+	 * Since the transition objects are shared, they must not be changed in
+	 * place afterwards; replace them through the automaton instead. The
+	 * shared states still report this automaton as their owner.
+	 * 
+	 * @return a copy-on-write clone of this automaton
+	 */
+	public synchronized ProbAutomaton copyOnWriteClone() {
+		ProbAutomaton a;
+		try {
+			a = (ProbAutomaton) getClass().getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Could not clone "
+					+ getClass().getName(), e);
+		}
+		a.states = states;
+		a.finalStates = finalStates;
+		a.transitions = transitions;
+		a.initialState = initialState;
+		a.sharedSets = sharedSets = true;
+
+		a.transitionFromStateMap = new HashMap(transitionFromStateMap);
+		a.transitionToStateMap = new HashMap(transitionToStateMap);
+		a.transitionArrayFromStateMap = new HashMap(transitionArrayFromStateMap);
+		a.transitionArrayToStateMap = new HashMap(transitionArrayToStateMap);
+		a.cachedStates = cachedStates;
+		a.cachedTransitions = cachedTransitions;
+		a.cachedFinalStates = cachedFinalStates;
+		a.snapshot = snapshot;
+		a.rowCapacity = rowCapacity;
+
+		// From now on neither automaton owns any of the existing rows.
+		a.ownedFromRows = new HashSet();
+		a.ownedToRows = new HashSet();
+		ownedFromRows = new HashSet();
+		ownedToRows = new HashSet();
+		return a;
+	}
+	
+	/**
+	 * Copies everything this automaton still shares with a copy-on-write
+	 * clone, i.e. the state and transition sets and all adjacency rows, so
+	 * that later changes do not pay for the copies. Does nothing for an
+	 * automaton that shares nothing.
+	 */
+	public synchronized void unshare() {
+		ownSets();
+		if (ownedFromRows == null)
+			return;
+		for (Iterator it = states.iterator(); it.hasNext();) {
+			ProbState state = (ProbState) it.next();
+			fromRow(state);
+			toRow(state);
+		}
+	}
+	
 	/**
 	 * Retrieves all transitions that eminate from a state.
 	 * 
@@ -109,23 +201,27 @@ public class ProbAutomaton{
 	 * @param trans
 	 *            the transition object to add to the automaton
 	 */
-	public void addTransition(ProbTransition trans) {
+	public synchronized void addTransition(ProbTransition trans) {
 		if (!getTransitionClass().isInstance(trans) || trans == null) {
 			throw (new IncompatibleTransitionException());
 		}
 		if (transitions.contains(trans))
 			return;
         if(trans.getToState() == null || trans.getFromState() == null) return;
+		ownSets();
+		if (undoLog != null)
+			undoLog.add(new Change(ADD_TRANSITION, trans));
 		transitions.add(trans);		
         if(transitionFromStateMap == null) transitionFromStateMap = new HashMap();
-		List list = (List) transitionFromStateMap.get(trans.getFromState());
+		List list = fromRow(trans.getFromState());
 		list.add(trans);
         if(transitionToStateMap == null) transitionToStateMap = new HashMap();
-		list = (List)transitionToStateMap.get(trans.getToState()) ;
+		list = toRow(trans.getToState());
 		list.add(trans);
 		transitionArrayFromStateMap.remove(trans.getFromState());
 		transitionArrayToStateMap.remove(trans.getToState());
 		cachedTransitions = null;
+		snapshot = null;
 
 	}
 	
@@ -139,7 +235,7 @@ public class ProbAutomaton{
 	 * @param newTrans
 	 *            the transition object to add to the automaton
 	 */
-	public void replaceTransition(ProbTransition oldTrans, ProbTransition newTrans) {
+	public synchronized void replaceTransition(ProbTransition oldTrans, ProbTransition newTrans) {
 		if (!getTransitionClass().isInstance(newTrans)) {
 			throw new IncompatibleTransitionException();
 		}
@@ -150,18 +246,25 @@ public class ProbAutomaton{
 			removeTransition(oldTrans);
 			return;
 		}
+		ownSets();
 		if (!transitions.remove(oldTrans)) {
 			throw new IllegalArgumentException(
 					"Replacing transition that not already in the automaton!");
 		}
+		if (undoLog != null) {
+			Change change = new Change(REPLACE_TRANSITION, oldTrans);
+			change.replacement = newTrans;
+			undoLog.add(change);
+		}
 		transitions.add(newTrans);
-		List list = (List) transitionFromStateMap.get(oldTrans.getFromState());
+		List list = fromRow(oldTrans.getFromState());
 		list.set(list.indexOf(oldTrans), newTrans);
-		list = (List) transitionToStateMap.get(oldTrans.getToState());
+		list = toRow(oldTrans.getToState());
 		list.set(list.indexOf(oldTrans), newTrans);
 		transitionArrayFromStateMap.remove(oldTrans.getFromState());
 		transitionArrayToStateMap.remove(oldTrans.getToState());
 		cachedTransitions = null;
+		snapshot = null;
 	}
 	
 	/**
@@ -170,16 +273,23 @@ public class ProbAutomaton{
 	 * @param trans
 	 *            the transition object to remove from this automaton.
 	 */
-	public void removeTransition(ProbTransition trans) {
-		transitions.remove(trans);
-		List l = (List) transitionFromStateMap.get(trans.getFromState());
+	public synchronized void removeTransition(ProbTransition trans) {
+		ownSets();
+		if (transitions.remove(trans) && undoLog != null) {
+			Change change = new Change(REMOVE_TRANSITION, trans);
+			change.fromIndex = ((List) transitionFromStateMap.get(trans.getFromState())).indexOf(trans);
+			change.toIndex = ((List) transitionToStateMap.get(trans.getToState())).indexOf(trans);
+			undoLog.add(change);
+		}
+		List l = fromRow(trans.getFromState());
 		l.remove(trans);
-		l = (List) transitionToStateMap.get(trans.getToState());
+		l = toRow(trans.getToState());
 		l.remove(trans);
 		// Remove cached arrays.
 		transitionArrayFromStateMap.remove(trans.getFromState());
 		transitionArrayToStateMap.remove(trans.getToState());
 		cachedTransitions = null;
+		snapshot = null;
 
 	}
 	
@@ -190,7 +300,7 @@ public class ProbAutomaton{
 	 * @param point
 	 *            the point to put the state at
 	 */
-	public ProbState createState() {
+	public synchronized ProbState createState() {
 		int i = 0;
 		while (getStateWithID(i) != null)
 			i++;
@@ -206,7 +316,7 @@ public class ProbAutomaton{
 	 * @param point
 	 *            the point to put the state at
 	 */
-	public final ProbState createStateWithId(int i) {
+	public final synchronized ProbState createStateWithId(int i) {
 		ProbState state = new ProbState(i, this);
 		addState(state);
 		return state;
@@ -219,11 +329,19 @@ public class ProbAutomaton{
 	 * @param state
 	 *            the state to add
 	 */
-	protected final void addState(ProbState state) {
+	protected final synchronized void addState(ProbState state) {
+		ownSets();
+		if (undoLog != null)
+			undoLog.add(new Change(ADD_STATE, state));
 		states.add(state);
-		transitionFromStateMap.put(state, new LinkedList());
-		transitionToStateMap.put(state, new LinkedList());
+		transitionFromStateMap.put(state, new ArrayList(rowCapacity));
+		transitionToStateMap.put(state, new ArrayList(rowCapacity));
+		if (ownedFromRows != null) {
+			ownedFromRows.add(state);
+			ownedToRows.add(state);
+		}
 		cachedStates = null;
+		snapshot = null;
 	}
 	
 	/**
@@ -233,7 +351,7 @@ public class ProbAutomaton{
 	 * @param state
 	 *            the state to remove
 	 */
-	public void removeState(ProbState state) {
+	public synchronized void removeState(ProbState state) {
 		ProbTransition[] t = getTransitionsFromState(state);
 		for (int i = 0; i < t.length; i++)
 			removeTransition(t[i]);
@@ -241,18 +359,31 @@ public class ProbAutomaton{
 		for (int i = 0; i < t.length; i++)
 			removeTransition(t[i]);
 
+		ownSets();
+		if (undoLog != null) {
+			Change change = new Change(REMOVE_STATE, state);
+			change.wasFinal = finalStates.contains(state);
+			change.wasInitial = state == initialState;
+			undoLog.add(change);
+		}
 		states.remove(state);
-		finalStates.remove(state);
+		if (finalStates.remove(state))
+			cachedFinalStates = null;
 		if (state == initialState)
 			initialState = null;
 
 		transitionFromStateMap.remove(state);
 		transitionToStateMap.remove(state);
+		if (ownedFromRows != null) {
+			ownedFromRows.remove(state);
+			ownedToRows.remove(state);
+		}
 
 		transitionArrayFromStateMap.remove(state);
 		transitionArrayToStateMap.remove(state);
 
 		cachedStates = null;
+		snapshot = null;
 	}
 	
 	/**
@@ -265,9 +396,12 @@ public class ProbAutomaton{
 	 * @return the old initial state, or <CODE>null</CODE> if there was no
 	 *         initial state
 	 */
-	public ProbState setInitialState(ProbState initialState) {
+	public synchronized ProbState setInitialState(ProbState initialState) {
 		ProbState oldInitialState = this.initialState;
+		if (undoLog != null)
+			undoLog.add(new Change(SET_INITIAL_STATE, oldInitialState));
 		this.initialState = initialState;
+		snapshot = null;
 		return oldInitialState;
 	}
 	
@@ -311,9 +445,12 @@ public class ProbAutomaton{
 	 * @param finalState
 	 *            a new final state to add to the collection of final states
 	 */
-	public void addFinalState(ProbState finalState) {
+	public synchronized void addFinalState(ProbState finalState) {
+		ownSets();
 		cachedFinalStates = null;
-		finalStates.add(finalState);
+		snapshot = null;
+		if (finalStates.add(finalState) && undoLog != null)
+			undoLog.add(new Change(ADD_FINAL_STATE, finalState));
 	}
 	
 	/**
@@ -323,9 +460,12 @@ public class ProbAutomaton{
 	 * @param state
 	 *            the state to make not a final state
 	 */
-	public void removeFinalState(ProbState state) {
+	public synchronized void removeFinalState(ProbState state) {
+		ownSets();
 		cachedFinalStates = null;
-		finalStates.remove(state);
+		snapshot = null;
+		if (finalStates.remove(state) && undoLog != null)
+			undoLog.add(new Change(REMOVE_FINAL_STATE, state));
 	}
 
 	/**
@@ -441,7 +581,7 @@ public class ProbAutomaton{
 	 * @param state
 	 * 			whose outgoing transitions will be weighted
 	 */
-	public void weightTransitionProbabilities(ProbState state){
+	public synchronized void weightTransitionProbabilities(ProbState state){
 		ProbTransition[] transitions = getTransitionsFromState(state);
 		BigDecimal hundredPercent = new BigDecimal(0);
 		BigDecimal temp;
@@ -460,10 +600,201 @@ public class ProbAutomaton{
 			if(transition.getLabel().equals(DTMCToStochasticRegularExpressionConverter.LAMBDA) ||
 					transition.getLabel().equals(DTMCToStochasticRegularExpressionConverter.EMPTY)) continue;
 			temp = transition.getProbability().multiply(new BigDecimal(100));
-			transition.setProbability(temp.divide(hundredPercent,2 , RoundingMode.HALF_EVEN));
+			// transitions may be shared with a copy-on-write clone, so they are
+			// replaced rather than changed in place
+			replaceTransition(transition, new ProbTransition(transition.getFromState(),
+					transition.getToState(), transition.getLabel(),
+					temp.divide(hundredPercent,2 , RoundingMode.HALF_EVEN)));
 		}
 	}
 	
+	/**
+	 * Returns an immutable snapshot of the current structure of this
+	 * automaton, for threads that query it concurrently. The getters of the
+	 * automaton itself fill caches and must not be called from several
+	 * threads at once; the snapshot's getters never write.
+	 * 
+	 * All methods that change the automaton are synchronized on it and drop
+	 * the published snapshot. The next call builds a new one under the same
+	 * lock; until then every caller gets the same snapshot without locking.
+	 * 
+	 * @return a snapshot of this automaton
+	 */
+	public ProbAutomatonSnapshot getSnapshot() {
+		ProbAutomatonSnapshot current = snapshot;
+		if (current != null)
+			return current;
+		synchronized (this) {
+			if (snapshot == null)
+				snapshot = new ProbAutomatonSnapshot(this);
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Starts recording changes to this automaton, if it does not already, and
+	 * returns a mark for the current point. Everything changed after the mark
+	 * can be undone with {@link #rollback}, so that a removal can be tried
+	 * out and reverted in time proportional to the changes it made. Marks may
+	 * be nested.
+	 * 
+	 * @return the mark to roll back to
+	 */
+	public synchronized int mark() {
+		if (undoLog == null)
+			undoLog = new ArrayList();
+		return undoLog.size();
+	}
+
+	/**
+	 * Undoes every change made since <CODE>mark</CODE> was taken, newest
+	 * first. Transitions come back at their old positions in the rows. The
+	 * log stays active and earlier marks remain valid.
+	 * 
+	 * @param mark
+	 *            a mark returned by {@link #mark}
+	 */
+	public synchronized void rollback(int mark) {
+		if (undoLog == null || mark < 0 || mark > undoLog.size())
+			throw new IllegalArgumentException("Rolling back to an unknown mark!");
+		ArrayList log = undoLog;
+		undoLog = null; // the undo operations are not recorded
+		try {
+			for (int i = log.size() - 1; i >= mark; i--)
+				undo((Change) log.remove(i));
+		} finally {
+			undoLog = log;
+			snapshot = null;
+		}
+	}
+
+	/**
+	 * Returns whether changes are being recorded, i.e. whether someone took a
+	 * mark that has not been committed yet. Code that takes marks of its own
+	 * should only commit if this was false before its first mark, so that it
+	 * does not drop a log its caller started.
+	 * 
+	 * @return true if there is an undo log
+	 */
+	public synchronized boolean isRecording() {
+		return undoLog != null;
+	}
+
+	/**
+	 * Keeps all changes, stops recording and drops the log. All marks become
+	 * invalid.
+	 */
+	public synchronized void commit() {
+		undoLog = null;
+	}
+
+	/**
+	 * Reverts a single recorded change.
+	 * 
+	 * @param change
+	 *            the change to revert
+	 */
+	private void undo(Change change) {
+		switch (change.kind) {
+		case ADD_TRANSITION:
+			removeTransition(change.transition);
+			break;
+		case REMOVE_TRANSITION:
+			insertTransition(change.transition, change.fromIndex, change.toIndex);
+			break;
+		case REPLACE_TRANSITION:
+			replaceTransition(change.replacement, change.transition);
+			break;
+		case ADD_STATE:
+			removeState(change.state);
+			break;
+		case REMOVE_STATE:
+			addState(change.state);
+			if (change.wasFinal)
+				addFinalState(change.state);
+			if (change.wasInitial)
+				initialState = change.state;
+			break;
+		case ADD_FINAL_STATE:
+			removeFinalState(change.state);
+			break;
+		case REMOVE_FINAL_STATE:
+			addFinalState(change.state);
+			break;
+		case SET_INITIAL_STATE:
+			initialState = change.state;
+			break;
+		}
+	}
+
+	/**
+	 * Puts a removed transition back at its old positions in the rows.
+	 * 
+	 * @param trans
+	 *            the transition
+	 * @param fromIndex
+	 *            the position in the row of its from state
+	 * @param toIndex
+	 *            the position in the row of its to state
+	 */
+	private void insertTransition(ProbTransition trans, int fromIndex, int toIndex) {
+		ownSets();
+		transitions.add(trans);
+		fromRow(trans.getFromState()).add(fromIndex, trans);
+		toRow(trans.getToState()).add(toIndex, trans);
+		transitionArrayFromStateMap.remove(trans.getFromState());
+		transitionArrayToStateMap.remove(trans.getToState());
+		cachedTransitions = null;
+		snapshot = null;
+	}
+	
+	/**
+	 * Returns the list of transitions from <CODE>state</CODE> for writing,
+	 * copying it first if it is still shared with a clone.
+	 * 
+	 * @param state
+	 *            the state whose outgoing row is changed
+	 * @return the list holding the transitions from <CODE>state</CODE>
+	 */
+	private List fromRow(ProbState state) {
+		List list = (List) transitionFromStateMap.get(state);
+		if (ownedFromRows != null && list != null && ownedFromRows.add(state)) {
+			list = new ArrayList(list);
+			transitionFromStateMap.put(state, list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Returns the list of transitions to <CODE>state</CODE> for writing,
+	 * copying it first if it is still shared with a clone.
+	 * 
+	 * @param state
+	 *            the state whose incoming row is changed
+	 * @return the list holding the transitions to <CODE>state</CODE>
+	 */
+	private List toRow(ProbState state) {
+		List list = (List) transitionToStateMap.get(state);
+		if (ownedToRows != null && list != null && ownedToRows.add(state)) {
+			list = new ArrayList(list);
+			transitionToStateMap.put(state, list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Copies the state, final state and transition sets if they are still
+	 * shared with a clone.
+	 */
+	private void ownSets() {
+		if (!sharedSets)
+			return;
+		states = new HashSet(states);
+		finalStates = new HashSet(finalStates);
+		transitions = new HashSet(transitions);
+		sharedSets = false;
+	}
+	
 	
 	
 	/** The collection of states in this automaton. */
@@ -511,4 +842,72 @@ public class ProbAutomaton{
 	 * is a sort of cashing.
 	 */
 	protected HashMap transitionArrayToStateMap = new HashMap();
+
+	/** The initial capacity of the transition lists of a new state. */
+	private int rowCapacity = 4;
+
+	/**
+	 * The states whose outgoing rows this automaton no longer shares with a
+	 * clone, or <CODE>null</CODE> if it was never cloned.
+	 */
+	private Set ownedFromRows = null;
+
+	/**
+	 * The states whose incoming rows this automaton no longer shares with a
+	 * clone, or <CODE>null</CODE> if it was never cloned.
+	 */
+	private Set ownedToRows = null;
+
+	/** Whether the state and transition sets are shared with a clone. */
+	private boolean sharedSets = false;
+
+	/**
+	 * The published snapshot, or <CODE>null</CODE> if the automaton changed
+	 * since the last one was built.
+	 */
+	private volatile ProbAutomatonSnapshot snapshot = null;
+
+	/**
+	 * The changes made since the first {@link #mark}, oldest first, or
+	 * <CODE>null</CODE> if changes are not recorded.
+	 */
+	private ArrayList undoLog = null;
+
+	/** The kinds of recorded changes. */
+	private static final int ADD_TRANSITION = 0, REMOVE_TRANSITION = 1,
+			REPLACE_TRANSITION = 2, ADD_STATE = 3, REMOVE_STATE = 4,
+			ADD_FINAL_STATE = 5, REMOVE_FINAL_STATE = 6, SET_INITIAL_STATE = 7;
+
+	/**
+	 * A single entry of the undo log.
+	 */
+	private static class Change {
+		Change(int kind, ProbTransition transition) {
+			this.kind = kind;
+			this.transition = transition;
+		}
+
+		Change(int kind, ProbState state) {
+			this.kind = kind;
+			this.state = state;
+		}
+
+		/** What was changed. */
+		final int kind;
+
+		/** The added, removed or replaced transition. */
+		ProbTransition transition;
+
+		/** The transition that replaced <CODE>transition</CODE>. */
+		ProbTransition replacement;
+
+		/** The positions of a removed transition in its two rows. */
+		int fromIndex, toIndex;
+
+		/** The added or removed state, or the previous initial state. */
+		ProbState state;
+
+		/** What a removed state was. */
+		boolean wasFinal, wasInitial;
+	}
 }
@@ -0,0 +1,213 @@
+package probautomata;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable view of a <CODE>ProbAutomaton</CODE> at one point in time.
+ * Unlike the getters of the automaton, which fill caches as they go, none of
+ * the methods here write anything, so any number of threads may query the
+ * same snapshot without locking. Snapshots are obtained with
+ * {@link ProbAutomaton#getSnapshot}.
+ *
+ * The returned arrays are shared between all callers and must not be
+ * modified. The transition and state objects are the ones of the automaton.
+ */
+
+public final class ProbAutomatonSnapshot {
+	/**
+	 * Copies the structure of <CODE>automaton</CODE>. The caller must hold the
+	 * lock of the automaton. The snapshot is built from the state and
+	 * transition sets and the adjacency rows themselves, not through the
+	 * getters, so that it does not fill the caches of the automaton, which
+	 * unsynchronized readers may be using at the same time.
+	 *
+	 * @param automaton
+	 *            the automaton to take the snapshot of
+	 */
+	@SuppressWarnings("unchecked")
+	ProbAutomatonSnapshot(ProbAutomaton automaton) {
+		ProbState[] s = (ProbState[]) automaton.states.toArray(new ProbState[automaton.states.size()]);
+		Arrays.sort(s, new Comparator<ProbState>() {
+			public int compare(ProbState s1, ProbState s2) {
+				return s1.getID() - s2.getID();
+			}
+		});
+		states = s;
+		transitions = (ProbTransition[]) automaton.transitions
+				.toArray(new ProbTransition[automaton.transitions.size()]);
+		finalStates = (ProbState[]) automaton.finalStates
+				.toArray(new ProbState[automaton.finalStates.size()]);
+		initialState = automaton.initialState;
+
+		Map<ProbState, ProbTransition[]> from = new HashMap<ProbState, ProbTransition[]>(states.length * 2);
+		Map<ProbState, ProbTransition[]> to = new HashMap<ProbState, ProbTransition[]>(states.length * 2);
+		Map<Integer, ProbState> ids = new HashMap<Integer, ProbState>(states.length * 2);
+		for (int i = 0; i < states.length; i++) {
+			from.put(states[i], toArray((List<ProbTransition>) automaton.transitionFromStateMap.get(states[i])));
+			to.put(states[i], toArray((List<ProbTransition>) automaton.transitionToStateMap.get(states[i])));
+			ids.put(Integer.valueOf(states[i].getID()), states[i]);
+		}
+		Set<ProbState> finals = new HashSet<ProbState>();
+		for (int i = 0; i < finalStates.length; i++)
+			finals.add(finalStates[i]);
+
+		transitionsFromState = from;
+		transitionsToState = to;
+		stateById = ids;
+		finalStateSet = finals;
+	}
+
+	/**
+	 * Copies an adjacency row of the automaton.
+	 *
+	 * @param row
+	 *            the row, or <CODE>null</CODE> if the state has none
+	 * @return the transitions of the row
+	 */
+	private static ProbTransition[] toArray(List<ProbTransition> row) {
+		return row == null ? NO_TRANSITIONS : row.toArray(new ProbTransition[row.size()]);
+	}
+
+	/**
+	 * Returns all states, in order of ascending state IDs.
+	 *
+	 * @return an array containing all the states
+	 */
+	public ProbState[] getStates() {
+		return states;
+	}
+
+	/**
+	 * Returns all transitions.
+	 *
+	 * @return an array containing all transitions
+	 */
+	public ProbTransition[] getTransitions() {
+		return transitions;
+	}
+
+	/**
+	 * Retrieves all transitions that eminate from a state.
+	 *
+	 * @param from
+	 *            the state the returned transitions come from
+	 * @return the transitions from this state, or an empty array if the state
+	 *         is not part of the snapshot
+	 */
+	public ProbTransition[] getTransitionsFromState(ProbState from) {
+		ProbTransition[] t = transitionsFromState.get(from);
+		return t == null ? NO_TRANSITIONS : t;
+	}
+
+	/**
+	 * Retrieves all transitions that travel to a state.
+	 *
+	 * @param to
+	 *            the state the returned transitions go to
+	 * @return the transitions to this state, or an empty array if the state is
+	 *         not part of the snapshot
+	 */
+	public ProbTransition[] getTransitionsToState(ProbState to) {
+		ProbTransition[] t = transitionsToState.get(to);
+		return t == null ? NO_TRANSITIONS : t;
+	}
+
+	/**
+	 * Retrieves all transitions going from one given state to another given
+	 * state.
+	 *
+	 * @param from
+	 *            the state all returned transitions should come from
+	 * @param to
+	 *            the state all returned transitions should go to
+	 * @return an array of all transitions from <CODE>from</CODE> to
+	 *         <CODE>to</CODE>
+	 */
+	public ProbTransition[] getTransitionsFromStateToState(ProbState from, ProbState to) {
+		ProbTransition[] t = getTransitionsFromState(from);
+		int count = 0;
+		for (int i = 0; i < t.length; i++)
+			if (t[i].getToState() == to)
+				count++;
+		ProbTransition[] result = new ProbTransition[count];
+		for (int i = 0, j = 0; j < count; i++)
+			if (t[i].getToState() == to)
+				result[j++] = t[i];
+		return result;
+	}
+
+	/**
+	 * Returns the state with this ID.
+	 *
+	 * @param id
+	 *            the ID to look for
+	 * @return the state with this ID, or <CODE>null</CODE> if there is none
+	 */
+	public ProbState getStateWithID(int id) {
+		return stateById.get(Integer.valueOf(id));
+	}
+
+	/**
+	 * Returns the initial state.
+	 *
+	 * @return the initial state, or <CODE>null</CODE> if there is none
+	 */
+	public ProbState getInitialState() {
+		return initialState;
+	}
+
+	/**
+	 * Returns all final states, in no particular order.
+	 *
+	 * @return an array containing all final states
+	 */
+	public ProbState[] getFinalStates() {
+		return finalStates;
+	}
+
+	/**
+	 * Determines if the state passed in is a final state.
+	 *
+	 * @param state
+	 *            the state to check
+	 * @return <CODE>true</CODE> if the state is final
+	 */
+	public boolean isFinalState(ProbState state) {
+		return finalStateSet.contains(state);
+	}
+
+	/**
+	 * Determines if the state passed in is the initial state.
+	 *
+	 * @param state
+	 *            the state to check
+	 * @return <CODE>true</CODE> if the state is the initial state
+	 */
+	public boolean isInitialState(ProbState state) {
+		return state == initialState;
+	}
+
+	private static final ProbTransition[] NO_TRANSITIONS = new ProbTransition[0];
+
+	private final ProbState[] states;
+
+	private final ProbTransition[] transitions;
+
+	private final ProbState[] finalStates;
+
+	private final ProbState initialState;
+
+	private final Map<ProbState, ProbTransition[]> transitionsFromState;
+
+	private final Map<ProbState, ProbTransition[]> transitionsToState;
+
+	private final Map<Integer, ProbState> stateById;
+
+	private final Set<ProbState> finalStateSet;
+}
@@ -409,7 +409,9 @@ public static void getSingleFinalState(ProbAutomaton automaton) {
 		
 		for(ProbState finalState: automaton.getFinalStates()){
 			transition = automaton.getTransitionsFromState(finalState)[0];
-			transition.setToState(newFinalState);
+			// redirect by replacing, the transition may be shared with a clone
+			automaton.removeTransition(transition);
+			automaton.addTransition(transition.copy(finalState, newFinalState));
 			automaton.removeFinalState(finalState);
 		}
 		automaton.addFinalState(newFinalState);
@@ -468,6 +470,25 @@ public static void convertToGTG(ProbAutomaton automaton) {
 		}
 	}
 
+	/**
+	 * Converts <CODE>automaton</CODE> into a generalized transition graph
+	 * with only two states, removing the states in the order given by
+	 * <CODE>ordering</CODE>.
+	 * 
+	 * @param automaton
+	 *            the automaton.
+	 * @param ordering
+	 *            decides which state is removed next.
+	 */
+public static void convertToGTG(ProbAutomaton automaton, EliminationOrdering ordering) {
+		ProbState state;
+		while ((state = ordering.nextState(automaton)) != null) {
+			ProbTransition[] transitions = getTransitionsForRemoveState(state,
+					automaton);
+			removeState(state, transitions, automaton);
+		}
+	}
+
 	/**
 	 * Returns a string of <CODE>word</CODE> surrounded by parentheses. i.e. (<word>),
 	 * unless it is unnecessary.
@@ -16,6 +16,29 @@ public class DiscreteTimeMarkovChain extends ProbAutomaton {
 		super();
 	}
 
+	/**
+	 * Creates a chain with no states and no transitions that has room for the
+	 * given number of them.
+	 * 
+	 * @param expectedStates
+	 *            the number of states that will be added
+	 * @param expectedTransitions
+	 *            the number of transitions that will be added
+	 */
+	public DiscreteTimeMarkovChain(int expectedStates, int expectedTransitions) {
+		super(expectedStates, expectedTransitions);
+	}
+
+	/**
+	 * Returns a copy-on-write clone of this chain.
+	 * 
+	 * @return a clone sharing states, transitions and rows with this chain
+	 * @see ProbAutomaton#copyOnWriteClone
+	 */
+	public DiscreteTimeMarkovChain copyOnWriteClone() {
+		return (DiscreteTimeMarkovChain) super.copyOnWriteClone();
+	}
+
 	/**
 	 * Returns the class of <CODE>Transition</CODE> this automaton must
 	 * accept.
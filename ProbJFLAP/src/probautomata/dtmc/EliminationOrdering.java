@@ -0,0 +1,33 @@
+package probautomata.dtmc;
+
+import probautomata.ProbAutomaton;
+import probautomata.ProbState;
+
+/**
+ * An <CODE>EliminationOrdering</CODE> decides which state the state
+ * elimination removes next. It is asked again after every removal, so an
+ * ordering may look at the automaton as it is at that point.
+ *
+ * @see DTMCToStochasticRegularExpressionConverter#convertToGTG(ProbAutomaton, EliminationOrdering)
+ * @see EliminationOrderings
+ */
+
+public interface EliminationOrdering {
+	/**
+	 * Returns the next state to remove from <CODE>automaton</CODE>.
+	 *
+	 * @param automaton
+	 *            a simple automaton, see
+	 *            {@link DTMCToStochasticRegularExpressionConverter#convertToSimpleAutomaton}
+	 * @return the next removable state, or <CODE>null</CODE> if only the
+	 *         initial and the final state are left
+	 */
+	public ProbState nextState(ProbAutomaton automaton);
+
+	/**
+	 * Returns a short name of this ordering, used in reports.
+	 *
+	 * @return the name of this ordering
+	 */
+	public String getName();
+}
@@ -0,0 +1,257 @@
+package probautomata.dtmc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import probautomata.ProbAutomaton;
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+
+/**
+ * The elimination orderings that come with the converter. No single ordering
+ * gives the smallest expression on every model, which is why the
+ * {@link PortfolioConverter} can try several of them at once.
+ */
+
+public class EliminationOrderings {
+	/**
+	 * This is another one of those static method collections.
+	 */
+	private EliminationOrderings() {
+	}
+
+	/**
+	 * Returns the ordering that removes the states by ascending ID. This is
+	 * the order {@link DTMCToStochasticRegularExpressionConverter#convertToGTG(ProbAutomaton)}
+	 * uses.
+	 *
+	 * @return the ordering by ascending state ID
+	 */
+	public static EliminationOrdering ascendingId() {
+		return new EliminationOrdering() {
+			public ProbState nextState(ProbAutomaton automaton) {
+				ProbState[] states = automaton.getStates();
+				for (int i = 0; i < states.length; i++)
+					if (DTMCToStochasticRegularExpressionConverter.isRemovable(states[i], automaton))
+						return states[i];
+				return null;
+			}
+
+			public String getName() {
+				return "ascending";
+			}
+		};
+	}
+
+	/**
+	 * Returns the ordering that removes the states by descending ID.
+	 *
+	 * @return the ordering by descending state ID
+	 */
+	public static EliminationOrdering descendingId() {
+		return new EliminationOrdering() {
+			public ProbState nextState(ProbAutomaton automaton) {
+				ProbState[] states = automaton.getStates();
+				for (int i = states.length - 1; i >= 0; i--)
+					if (DTMCToStochasticRegularExpressionConverter.isRemovable(states[i], automaton))
+						return states[i];
+				return null;
+			}
+
+			public String getName() {
+				return "descending";
+			}
+		};
+	}
+
+	/**
+	 * Returns the ordering that removes the state with the fewest non-empty
+	 * paths through it first, i.e. the smallest product of incoming and
+	 * outgoing non-empty transitions.
+	 *
+	 * @return the ordering by fewest paths
+	 */
+	public static EliminationOrdering fewestPaths() {
+		return new EliminationOrdering() {
+			public ProbState nextState(ProbAutomaton automaton) {
+				ProbState[] states = automaton.getStates();
+				ProbState best = null;
+				long bestCost = Long.MAX_VALUE;
+				for (int i = 0; i < states.length; i++) {
+					if (!DTMCToStochasticRegularExpressionConverter.isRemovable(states[i], automaton))
+						continue;
+					long cost = (long) countNonEmpty(automaton.getTransitionsToState(states[i]))
+							* countNonEmpty(automaton.getTransitionsFromState(states[i]));
+					if (cost < bestCost) {
+						best = states[i];
+						bestCost = cost;
+					}
+				}
+				return best;
+			}
+
+			public String getName() {
+				return "fewest-paths";
+			}
+		};
+	}
+
+	/**
+	 * Returns the ordering that removes the state with the smallest weight
+	 * first. The weight estimates how much label text the removal adds: every
+	 * incoming label is copied once per outgoing transition and vice versa,
+	 * and the loop label once per path through the state.
+	 *
+	 * @return the ordering by state weight
+	 */
+	public static EliminationOrdering stateWeight() {
+		return new EliminationOrdering() {
+			public ProbState nextState(ProbAutomaton automaton) {
+				ProbState[] states = automaton.getStates();
+				ProbState best = null;
+				long bestWeight = Long.MAX_VALUE;
+				for (int i = 0; i < states.length; i++) {
+					if (!DTMCToStochasticRegularExpressionConverter.isRemovable(states[i], automaton))
+						continue;
+					long weight = getWeight(states[i], automaton);
+					if (weight < bestWeight) {
+						best = states[i];
+						bestWeight = weight;
+					}
+				}
+				return best;
+			}
+
+			public String getName() {
+				return "state-weight";
+			}
+		};
+	}
+
+	/**
+	 * Returns the ordering that tries out the removal of every removable state
+	 * and takes the one that leaves the least label text behind. Each trial is
+	 * undone with {@link ProbAutomaton#rollback}, so no copy of the automaton
+	 * is made; the price is one trial removal per candidate and step.
+	 *
+	 * @return the look-ahead ordering
+	 */
+	public static EliminationOrdering lookAhead() {
+		return new EliminationOrdering() {
+			public ProbState nextState(ProbAutomaton automaton) {
+				ProbState[] states = automaton.getStates();
+				ProbState best = null;
+				long bestLength = Long.MAX_VALUE;
+				// only a log started here is committed, the caller may have marks
+				boolean recording = automaton.isRecording();
+				int mark = automaton.mark();
+				try {
+					for (int i = 0; i < states.length; i++) {
+						if (!DTMCToStochasticRegularExpressionConverter.isRemovable(states[i], automaton))
+							continue;
+						ProbTransition[] transitions = DTMCToStochasticRegularExpressionConverter
+								.getTransitionsForRemoveState(states[i], automaton);
+						DTMCToStochasticRegularExpressionConverter.removeState(states[i],
+								transitions, automaton);
+						long length = getLabelLength(automaton.getTransitions());
+						automaton.rollback(mark);
+						if (length < bestLength) {
+							best = states[i];
+							bestLength = length;
+						}
+					}
+				} finally {
+					if (!recording)
+						automaton.commit();
+				}
+				return best;
+			}
+
+			public String getName() {
+				return "look-ahead";
+			}
+		};
+	}
+
+	/**
+	 * Returns an ordering that picks a random removable state each time.
+	 *
+	 * @param seed
+	 *            the seed, so that a run can be repeated
+	 * @return a random ordering
+	 */
+	public static EliminationOrdering random(final long seed) {
+		return new EliminationOrdering() {
+			private final Random random = new Random(seed);
+
+			public ProbState nextState(ProbAutomaton automaton) {
+				ProbState[] states = automaton.getStates();
+				List<ProbState> removable = new ArrayList<ProbState>();
+				for (int i = 0; i < states.length; i++)
+					if (DTMCToStochasticRegularExpressionConverter.isRemovable(states[i], automaton))
+						removable.add(states[i]);
+				if (removable.isEmpty())
+					return null;
+				return removable.get(random.nextInt(removable.size()));
+			}
+
+			public String getName() {
+				return "random-" + seed;
+			}
+		};
+	}
+
+	/**
+	 * Returns the weight of <CODE>state</CODE>, see {@link #stateWeight}.
+	 *
+	 * @param state
+	 *            the state that might be removed
+	 * @param automaton
+	 *            the automaton
+	 * @return the weight of the state
+	 */
+	private static long getWeight(ProbState state, ProbAutomaton automaton) {
+		ProbTransition[] in = automaton.getTransitionsToState(state);
+		ProbTransition[] out = automaton.getTransitionsFromState(state);
+		long inLength = 0, outLength = 0, loopLength = 0;
+		int inCount = 0, outCount = 0;
+		for (int i = 0; i < in.length; i++) {
+			if (isEmpty(in[i]))
+				continue;
+			if (in[i].getFromState() == state) {
+				loopLength += in[i].getLabel().length();
+				continue;
+			}
+			inLength += in[i].getLabel().length();
+			inCount++;
+		}
+		for (int i = 0; i < out.length; i++) {
+			if (isEmpty(out[i]) || out[i].getToState() == state)
+				continue;
+			outLength += out[i].getLabel().length();
+			outCount++;
+		}
+		return inLength * outCount + outLength * inCount + loopLength * inCount * outCount;
+	}
+
+	private static long getLabelLength(ProbTransition[] transitions) {
+		long length = 0;
+		for (int i = 0; i < transitions.length; i++)
+			if (!isEmpty(transitions[i]))
+				length += transitions[i].getLabel().length();
+		return length;
+	}
+
+	private static int countNonEmpty(ProbTransition[] transitions) {
+		int count = 0;
+		for (int i = 0; i < transitions.length; i++)
+			if (!isEmpty(transitions[i]))
+				count++;
+		return count;
+	}
+
+	private static boolean isEmpty(ProbTransition transition) {
+		return transition.getLabel().equals(DTMCToStochasticRegularExpressionConverter.EMPTY);
+	}
+}
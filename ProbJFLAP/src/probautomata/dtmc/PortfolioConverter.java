@@ -0,0 +1,209 @@
+package probautomata.dtmc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import probautomata.ProbAutomaton;
+import probautomata.ProbState;
+import probautomata.ProbTransition;
+
+/**
+ * Runs the state elimination with several orderings at once, each on its own
+ * copy-on-write clone of the automaton, and keeps the shortest expression.
+ * A run is abandoned as soon as the expression it builds between the initial
+ * and the final state is already longer than the best finished result.
+ *
+ * @see EliminationOrderings
+ */
+
+public class PortfolioConverter {
+	/**
+	 * Creates a portfolio that uses one thread per available processor.
+	 *
+	 * @param orderings
+	 *            the orderings to race
+	 */
+	public PortfolioConverter(EliminationOrdering[] orderings) {
+		this(orderings, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a portfolio.
+	 *
+	 * @param orderings
+	 *            the orderings to race
+	 * @param threads
+	 *            the maximal number of orderings that run at the same time
+	 */
+	public PortfolioConverter(EliminationOrdering[] orderings, int threads) {
+		if (orderings.length == 0)
+			throw new IllegalArgumentException("No elimination ordering given!");
+		this.orderings = orderings;
+		this.threads = Math.max(1, Math.min(threads, orderings.length));
+	}
+
+	/**
+	 * Returns the shortest expression any of the orderings produces for
+	 * <CODE>automaton</CODE> within the time budget. The automaton itself is
+	 * left unchanged.
+	 *
+	 * @param automaton
+	 *            a simple automaton, see
+	 *            {@link DTMCToStochasticRegularExpressionConverter#convertToSimpleAutomaton}
+	 * @param timeBudgetMillis
+	 *            the time after which unfinished runs are cancelled
+	 * @return the result of the race
+	 */
+	public Result convert(ProbAutomaton automaton, long timeBudgetMillis) {
+		final AtomicInteger bestLength = new AtomicInteger(Integer.MAX_VALUE);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		// all clones are taken here, before any run starts writing
+		for (int i = 0; i < orderings.length; i++) {
+			final ProbAutomaton clone = automaton.copyOnWriteClone();
+			final EliminationOrdering ordering = orderings[i];
+			futures.add(executor.submit(new Callable<String>() {
+				public String call() {
+					return eliminate(clone, ordering, bestLength);
+				}
+			}));
+		}
+
+		Result result = new Result();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				Future<String> future = futures.get(i);
+				String expression;
+				try {
+					expression = future.get(Math.max(0, deadline - System.nanoTime()),
+							TimeUnit.NANOSECONDS);
+				} catch (TimeoutException e) {
+					future.cancel(true);
+					result.timedOut++;
+					continue;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Elimination with ordering "
+							+ orderings[i].getName() + " failed", e.getCause());
+				}
+				if (expression == null) {
+					result.pruned++;
+					continue;
+				}
+				result.completed++;
+				if (result.expression == null
+						|| expression.length() < result.expression.length()) {
+					result.expression = expression;
+					result.ordering = orderings[i];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all removable states of <CODE>automaton</CODE> in the order
+	 * given by <CODE>ordering</CODE>.
+	 *
+	 * @return the expression, or <CODE>null</CODE> if the run was cancelled or
+	 *         could not beat the best finished run any more
+	 */
+	private static String eliminate(ProbAutomaton automaton, EliminationOrdering ordering,
+			AtomicInteger bestLength) {
+		ProbState state;
+		while ((state = ordering.nextState(automaton)) != null) {
+			if (Thread.currentThread().isInterrupted())
+				return null;
+			ProbTransition[] transitions = DTMCToStochasticRegularExpressionConverter
+					.getTransitionsForRemoveState(state, automaton);
+			DTMCToStochasticRegularExpressionConverter.removeState(state, transitions, automaton);
+			if (getMinimalLength(automaton) >= bestLength.get())
+				return null;
+		}
+		String expression = DTMCToStochasticRegularExpressionConverter.getExpressionFromGTG(automaton);
+		int length;
+		while ((length = bestLength.get()) > expression.length()
+				&& !bestLength.compareAndSet(length, expression.length()))
+			;
+		return expression;
+	}
+
+	/**
+	 * Returns a lower bound for the length of the final expression. The label
+	 * between the initial and the final state ends up in the final expression,
+	 * minus at most the probability suffix that
+	 * {@link DTMCToStochasticRegularExpressionConverter#cutProbability} removes.
+	 */
+	private static int getMinimalLength(ProbAutomaton automaton) {
+		String ij = DTMCToStochasticRegularExpressionConverter.getIJ(automaton);
+		if (ij.equals(DTMCToStochasticRegularExpressionConverter.EMPTY))
+			return 0;
+		return Math.max(0, ij.length() - PROBABILITY_SUFFIX_LENGTH);
+	}
+
+	/**
+	 * The outcome of a portfolio run.
+	 */
+	public static class Result {
+		/**
+		 * Returns the shortest expression found.
+		 *
+		 * @return the shortest expression, or <CODE>null</CODE> if no run
+		 *         finished within the time budget
+		 */
+		public String getExpression() {
+			return expression;
+		}
+
+		/**
+		 * Returns the ordering that produced the shortest expression.
+		 *
+		 * @return the winning ordering, or <CODE>null</CODE> if no run finished
+		 */
+		public EliminationOrdering getOrdering() {
+			return ordering;
+		}
+
+		/** @return the number of runs that finished */
+		public int getCompleted() {
+			return completed;
+		}
+
+		/** @return the number of runs abandoned because they got too long */
+		public int getPruned() {
+			return pruned;
+		}
+
+		/** @return the number of runs cancelled at the end of the time budget */
+		public int getTimedOut() {
+			return timedOut;
+		}
+
+		private String expression = null;
+
+		private EliminationOrdering ordering = null;
+
+		private int completed, pruned, timedOut;
+	}
+
+	/** the length of a probability suffix such as [0.25] */
+	private static final int PROBABILITY_SUFFIX_LENGTH = 6;
+
+	/** the orderings to race */
+	private final EliminationOrdering[] orderings;
+
+	/** the number of worker threads */
+	private final int threads;
+}
@@ -2,28 +2,22 @@ package tra2emf;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Map;
-
-import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
-import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import transitiongraph.TransitionGraph;
+import transitiongraph.io.TransitionGraphXmiWriter;
 
 public class Tra2Emf {
 
 	public static final String PA = "PA";
 	public static final String FSA = "FSA";
 
-	static {
-		Resource.Factory.Registry reg = Resource.Factory.Registry.INSTANCE;
-		Map<String, Object> m = reg.getExtensionToFactoryMap();
-		m.put("xmi", new XMIResourceFactoryImpl());
-	}
-
 	private static File[] getFilesFromFolder(String folderPath) {
 		File folder = new File(folderPath);
 		File[] listOfFiles = folder.listFiles();
@@ -36,36 +30,95 @@ public class Tra2Emf {
 		String outputDirectory = null;
 		String kind = null;
 		boolean uniform = true;
+		int threads = Runtime.getRuntime().availableProcessors();
 
 		try {
 			inputDirectory = args[0];
 			outputDirectory = args[1];
 			kind = args[2];
 			uniform = Boolean.parseBoolean(args[3]);
+			if (args.length > 4) {
+				threads = Integer.parseInt(args[4]);
+			}
 		} catch (Exception e1) {
-			System.err.println("Arguments should be: <input-dir> <output-dir> {\"FSA\"|\"PA\"} {\"true\"|\"false\"}}");
+			System.err.println(
+					"Arguments should be: <input-dir> <output-dir> {\"FSA\"|\"PA\"} {\"true\"|\"false\"}} [<threads>]");
 			e1.printStackTrace();
 		}
 
 		assert (kind.equals(FSA) || kind.equals(PA));
 
+		long start = System.nanoTime();
 		File[] filesInFolder = getFilesFromFolder(inputDirectory);
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<Future<Conversion>> conversions = new ArrayList<Future<Conversion>>();
 		for (int i = 0; i < filesInFolder.length; i++) {
 			assert (filesInFolder[i].getName().endsWith("tra"));
-			System.out.println("Converting " + filesInFolder[i]);
-			Tra2EmfConverter converter = new Tra2EmfConverter();
-			TransitionGraph tg = converter.convert(filesInFolder[i], kind, uniform);
+			conversions.add(workers.submit(new Conversion(filesInFolder[i], outputDirectory, kind, uniform)));
+		}
+		workers.shutdown();
 
-			// We just use EMF serialization to store the tg in an XMI file
-			ResourceSet resSet = new ResourceSetImpl();
-			Resource resource = resSet.createResource(URI.createURI(outputDirectory + File.separator
-					+ filesInFolder[i].getName().replace(".tra", ".xmi")));
-			resource.getContents().add(tg);
+		Conversion[] done = new Conversion[conversions.size()];
+		for (int i = 0; i < done.length; i++) {
 			try {
-				resource.save(Collections.EMPTY_MAP);
-			} catch (IOException e) {
-				e.printStackTrace();
+				done[i] = conversions.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				System.err.println(filesInFolder[i].getName() + " failed:");
+				e.getCause().printStackTrace();
 			}
 		}
+
+		System.out.println();
+		System.out.println(String.format("%-40s %8s %12s %12s %10s", "file", "states", "transitions", "convert (ms)",
+				"save (ms)"));
+		for (Conversion c : done) {
+			if (c != null) {
+				System.out.println(String.format("%-40s %8d %12d %12d %10d", c.traFile.getName(), c.states,
+						c.transitions, c.convertMillis, c.saveMillis));
+			}
+		}
+		System.out.println(String.format("%d files with %d threads in %d ms", conversions.size(), threads,
+				(System.nanoTime() - start) / 1000000));
+	}
+
+	/**
+	 * Converts and saves one file. At most one model per worker is in memory
+	 * at a time.
+	 */
+	private static class Conversion implements Callable<Conversion> {
+
+		private final File traFile;
+		private final String outputDirectory;
+		private final String kind;
+		private final boolean uniform;
+
+		private int states, transitions;
+		private long convertMillis, saveMillis;
+
+		Conversion(File traFile, String outputDirectory, String kind, boolean uniform) {
+			this.traFile = traFile;
+			this.outputDirectory = outputDirectory;
+			this.kind = kind;
+			this.uniform = uniform;
+		}
+
+		public Conversion call() throws IOException {
+			System.out.println("Converting " + traFile);
+			long start = System.nanoTime();
+			Tra2EmfConverter converter = new Tra2EmfConverter();
+			TransitionGraph tg = converter.convert(traFile, kind, uniform);
+			states = tg.getStates().size();
+			transitions = tg.getTransitions().size();
+			convertMillis = (System.nanoTime() - start) / 1000000;
+
+			// The XMI is streamed, exactly as EMF serialization would write it
+			start = System.nanoTime();
+			TransitionGraphXmiWriter.write(tg, new File(outputDirectory, traFile.getName().replace(".tra", ".xmi")));
+			saveMillis = (System.nanoTime() - start) / 1000000;
+			return this;
+		}
 	}
 }
@@ -1,16 +1,15 @@
 package tra2emf;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 import transitiongraph.State;
-import transitiongraph.Transition;
 import transitiongraph.TransitionGraph;
-import transitiongraph.TransitiongraphFactory;
+import transitiongraph.impl.TransitionGraphBuilder;
+import transitiongraph.io.TraHandler;
+import transitiongraph.io.TraReader;
 
 public class Tra2EmfConverter {
 
@@ -19,68 +18,27 @@ public class Tra2EmfConverter {
 
 	private Map<Integer, State> id2state;
 	private int stateCounter;
+	private String[] labels;
 
-	private TransitionGraph tg;
+	private TransitionGraphBuilder builder;
 
-	public TransitionGraph convert(File traFile, String kind, boolean uniform) {
+	/**
+	 * Converts a tra file into a transition graph.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read or is malformed, in which case no
+	 *             graph is returned rather than the part read so far
+	 */
+	public TransitionGraph convert(File traFile, String kind, boolean uniform) throws IOException {
 
 		this.id2state = new HashMap<Integer, State>();
 		this.stateCounter = 0;
+		this.labels = new String[16];
 
-		this.tg = TransitiongraphFactory.eINSTANCE.createTransitionGraph();
+		this.builder = new TransitionGraphBuilder();
 
 		// creates transitions (lazyly creates states)
-		try {
-			int lineCounter = 0;
-
-			FileReader fileReader = new FileReader(traFile);
-			BufferedReader bufferedReader = new BufferedReader(fileReader);
-			String line;
-			while ((line = bufferedReader.readLine()) != null) {
-				if (line.trim().equals("")){
-					break;
-				}
-				
-				lineCounter++;
-
-				if (uniform) {
-					// Ignore first line
-					if (lineCounter == 1) {
-						continue;
-					}
-				} else {
-					// First two lines give us start and final state IDs
-					if (lineCounter == 1) {
-						this.initialIds = getIds(line);
-						continue;
-					}
-					if (lineCounter == 2) {
-						this.finalIds = getIds(line);
-						continue;
-					}
-				}
-
-				int srcId = getSrcId(line);
-				int tgtId = getTgtId(line);
-				String label = getLabel(line);
-				double probability = getProbability(line);
-
-				Transition t = TransitiongraphFactory.eINSTANCE.createTransition();
-				t.setSource(getState(srcId));
-				t.setTarget(getState(tgtId));
-				t.setLabel(label);
-				if (kind.equals(Tra2Emf.FSA)) {
-					t.setProbability(1.0d);
-				} else {
-					t.setProbability(probability);
-				}
-
-				tg.getTransitions().add(t);
-			}
-			fileReader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		TraReader.readFile(traFile, new Handler(kind), uniform);
 
 		// set start and initial states
 		if (uniform) {
@@ -94,7 +52,7 @@ public class Tra2EmfConverter {
 			id2state.get(finalIds[i]).setIsFinal(true);
 		}
 
-		return tg;
+		return builder.build();
 	}
 
 	private State getState(int id) {
@@ -102,46 +60,57 @@ public class Tra2EmfConverter {
 			return id2state.get(id);
 		}
 
-		State s = TransitiongraphFactory.eINSTANCE.createState();
-		s.setId(id);
-		s.setIsInitial(false);
-		s.setIsFinal(false);
-
-		this.tg.getStates().add(s);
+		State s = this.builder.addState(id, false, false);
 		this.id2state.put(id, s);
 		this.stateCounter++;
 
 		return s;
 	}
 
-	private static int[] getIds(String line) {
-		String[] fragments = line.split(" ");
-		int[] res = new int[fragments.length];
-		for (int i = 0; i < fragments.length; i++) {
-			res[i] = Integer.parseInt(fragments[i]);
+	private String getLabel(int tgtId) {
+		if (tgtId < 0) {
+			// not cached, the table is indexed by id
+			return "s" + tgtId;
 		}
-
-		return res;
+		if (tgtId >= labels.length) {
+			String[] grown = new String[Math.max(labels.length * 2, tgtId + 1)];
+			System.arraycopy(labels, 0, grown, 0, labels.length);
+			labels = grown;
+		}
+		if (labels[tgtId] == null) {
+			labels[tgtId] = "s" + tgtId;
+		}
+		return labels[tgtId];
 	}
 
-	private static int getSrcId(String line) {
-		String[] fragments = line.split(" ");
-		return Integer.parseInt(fragments[0]);
-	}
+	/**
+	 * Adds the transitions of the tra file to the transition graph as they are
+	 * read.
+	 */
+	private class Handler implements TraHandler {
 
-	private static int getTgtId(String line) {
-		String[] fragments = line.split(" ");
-		return Integer.parseInt(fragments[1]);
-	}
+		private final boolean fsa;
 
-	private static double getProbability(String line) {
-		String[] fragments = line.split(" ");
-		return Double.parseDouble(fragments[2]);
-	}
+		Handler(String kind) {
+			this.fsa = kind.equals(Tra2Emf.FSA);
+		}
+
+		public void header(int numberOfStates, int numberOfTransitions) {
+			builder.ensureCapacity(numberOfStates, numberOfTransitions);
+		}
+
+		public void initialStates(int[] ids) {
+			initialIds = ids;
+		}
+
+		public void finalStates(int[] ids) {
+			finalIds = ids;
+		}
 
-	private static String getLabel(String line) {
-		String[] fragments = line.split(" ");
-		return "s" + fragments[1];
+		public void transition(int srcId, int tgtId, long unscaledProbability, int scale) {
+			double probability = fsa ? 1.0d : TraReader.toDouble(unscaledProbability, scale);
+			builder.addTransition(getState(srcId), getState(tgtId), getLabel(tgtId), probability);
+		}
 	}
 
 }
@@ -0,0 +1,65 @@
+package tra2emf;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.emf.common.util.URI;
+
+import transitiongraph.TransitionGraph;
+import transitiongraph.io.TrabFormat;
+import transitiongraph.io.TransitionGraphResources;
+import transitiongraph.io.TransitionGraphTrab;
+
+/**
+ * Converts tra files and EMF models (xmi files) into the binary trab format.
+ */
+public class Tra2Trab {
+
+	public static void main(String[] args) {
+		String inputDirectory = null;
+		String outputDirectory = null;
+		String kind = null;
+		boolean uniform = true;
+
+		try {
+			inputDirectory = args[0];
+			outputDirectory = args[1];
+			kind = args[2];
+			uniform = Boolean.parseBoolean(args[3]);
+		} catch (Exception e1) {
+			System.err.println("Arguments should be: <input-dir> <output-dir> {\"FSA\"|\"PA\"} {\"true\"|\"false\"}}");
+			e1.printStackTrace();
+		}
+
+		assert (kind.equals(Tra2Emf.FSA) || kind.equals(Tra2Emf.PA));
+
+		File[] filesInFolder = new File(inputDirectory).listFiles();
+		for (int i = 0; i < filesInFolder.length; i++) {
+			File file = filesInFolder[i];
+			String name = file.getName();
+			TransitionGraph tg;
+			try {
+				if (name.endsWith(".tra")) {
+					tg = new Tra2EmfConverter().convert(file, kind, uniform);
+				} else if (name.endsWith(".xmi")) {
+					tg = TransitionGraphResources.load(URI.createFileURI(file.getAbsolutePath()));
+				} else {
+					continue;
+				}
+			} catch (IOException e) {
+				System.err.println(name + " failed:");
+				e.printStackTrace();
+				continue;
+			}
+
+			System.out.println("Converting " + file);
+			File trabFile = new File(outputDirectory, name.substring(0, name.lastIndexOf('.')) + "."
+					+ TrabFormat.EXTENSION);
+			try {
+				TransitionGraphTrab.write(tg, trabFile);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}